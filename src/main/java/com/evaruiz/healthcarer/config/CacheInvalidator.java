@@ -0,0 +1,220 @@
+package com.evaruiz.healthcarer.config;
+
+import com.evaruiz.healthcarer.model.MedicationDB;
+import com.evaruiz.healthcarer.model.UserDB;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Cada réplica tiene su propia caché de segundo nivel. Cuando una réplica modifica o borra una medicación o
+// un usuario, publica el cambio en Redis tras el commit y el resto de réplicas expulsan esa entrada.
+// Redis pub/sub no guarda los mensajes, así que además las regiones caducan por tiempo (application.conf)
+// y al volver a suscribirse al canal se vacían enteras. Las consultas cacheadas van en una región propia de la
+// entidad que leen (queryRegion), para que un cambio sólo descarte las consultas que dependen de esa entidad
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidator implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener, MessageListener, SubscriptionListener {
+
+    public static final String CHANNEL = "healthcarer:cache:evict";
+    public static final String QUERY_REGION_PREFIX = "query.";
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    // Una carga que leyó la fila antes del commit puede volver a meter el valor antiguo justo después de la
+    // expulsión; repetirla pasado este tiempo cubre esas cargas en vuelo
+    private static final long REEVICT_DELAY_MS = 2000;
+
+    private static final Map<String, Class<?>> CACHED_ENTITIES = Stream.of(MedicationDB.class, UserDB.class)
+            .collect(Collectors.toMap(Class::getSimpleName, Function.identity()));
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String node = UUID.randomUUID().toString();
+
+    private Counter sentCounter;
+    private Counter receivedCounter;
+    private ScheduledExecutorService reevictExecutor;
+
+    @PostConstruct
+    public void init() {
+        sentCounter = meterRegistry.counter("hibernate.cache.invalidations.sent");
+        receivedCounter = meterRegistry.counter("hibernate.cache.invalidations.received");
+        reevictExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-reevict");
+            thread.setDaemon(true);
+            return thread;
+        });
+        EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reevictExecutor.shutdownNow();
+    }
+
+    // Para cambios hechos fuera de Hibernate, como el descuento de stock por JDBC: expulsa las entradas
+    // en esta réplica y en las demás cuando termina la transacción en curso
+    public void evict(Class<?> entityClass, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(entityClass, ids);
+                }
+            });
+        } else {
+            evictNow(entityClass, ids);
+        }
+    }
+
+    // Un alta no está en ninguna caché de entidades, pero puede invalidar consultas cacheadas como
+    // findByEmail, que en otra réplica seguiría devolviendo que el usuario no existe
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!requiresPostCommitHandling(event.getPersister())) {
+            return;
+        }
+        publish(event.getPersister().getMappedClass(), List.of(event.getId()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!requiresPostCommitHandling(event.getPersister())) {
+            return;
+        }
+        publish(event.getPersister().getMappedClass(), List.of(event.getId()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!requiresPostCommitHandling(event.getPersister())) {
+            return;
+        }
+        publish(event.getPersister().getMappedClass(), List.of(event.getId()));
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return CACHED_ENTITIES.containsValue(persister.getMappedClass());
+    }
+
+    // Formato del mensaje: réplica|entidad|id1,id2,...
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        Class<?> entityClass = parts.length == 3 ? CACHED_ENTITIES.get(parts[1]) : null;
+        if (entityClass == null || node.equals(parts[0])) {
+            return;
+        }
+        receivedCounter.increment();
+        evictLocal(entityClass, Arrays.stream(parts[2].split(",")).map(Long::valueOf).toList());
+    }
+
+    // Mientras la réplica estaba desconectada de Redis se han podido perder invalidaciones: al suscribirse
+    // (también al reconectar) se descartan todas las entradas en lugar de fiarse de ellas
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (!CHANNEL.equals(new String(channel, StandardCharsets.UTF_8))) {
+            return;
+        }
+        Cache cache = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache();
+        CACHED_ENTITIES.values().forEach(entityClass -> {
+            cache.evictEntityData(entityClass);
+            cache.evictQueryRegion(queryRegion(entityClass));
+        });
+    }
+
+    public static String queryRegion(Class<?> entityClass) {
+        return QUERY_REGION_PREFIX + entityClass.getSimpleName();
+    }
+
+    private void evictNow(Class<?> entityClass, Collection<?> ids) {
+        evictLocal(entityClass, ids);
+        publish(entityClass, ids);
+    }
+
+    private void evictLocal(Class<?> entityClass, Collection<?> ids) {
+        evictEntries(entityClass, ids);
+        try {
+            reevictExecutor.schedule(() -> evictEntries(entityClass, ids), REEVICT_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // La aplicación se está parando
+        }
+    }
+
+    private void evictEntries(Class<?> entityClass, Collection<?> ids) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache();
+        ids.forEach(id -> cache.evictEntityData(entityClass, id));
+        cache.evictQueryRegion(queryRegion(entityClass));
+    }
+
+    private void publish(Class<?> entityClass, Collection<?> ids) {
+        String message = node + "|" + entityClass.getSimpleName() + "|"
+                + ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+            sentCounter.increment();
+        } catch (DataAccessException e) {
+            log.warn("No se pudo publicar la invalidación de caché {}: {}", message, e.getMessage());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import io.minio.MinioClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 public class MinioConfig {
@@ -17,11 +18,29 @@ public class MinioConfig {
     @Value("${minio.secretKey}")
     private String secretKey;
 
+    @Value("${minio.publicEndpoint}")
+    private String publicEndpoint;
+
+    @Value("${minio.region}")
+    private String region;
+
     @Bean
+    @Primary
     public MinioClient minioClient() {
         return MinioClient.builder()
                 .endpoint(endpoint)
                 .credentials(accessKey, secretKey)
                 .build();
     }
+
+    // Cliente sólo para firmar URLs con el host que ve el navegador. Con la región fijada la firma
+    // se calcula en local, sin llamar a ese endpoint desde el servidor
+    @Bean
+    public MinioClient presignMinioClient() {
+        return MinioClient.builder()
+                .endpoint(publicEndpoint)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
 }
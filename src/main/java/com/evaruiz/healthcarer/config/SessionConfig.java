@@ -0,0 +1,15 @@
+package com.evaruiz.healthcarer.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+@Configuration
+public class SessionConfig {
+
+    // Spring Session usa el bean con este nombre para los atributos de sesión guardados en Redis
+    @Bean
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer() {
+        return new SessionSerializer();
+    }
+}
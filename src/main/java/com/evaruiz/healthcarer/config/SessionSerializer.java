@@ -0,0 +1,116 @@
+package com.evaruiz.healthcarer.config;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Serializa los atributos de sesión de Redis. El SecurityContext de un LoggedUser se guarda en binario con
+// sólo id, email, rol y nombre; los tiempos de la sesión como números. El resto va por serialización Java.
+// Los valores compactos empiezan por la versión del formato, y los de Java por 0xAC (cabecera de
+// ObjectOutputStream), así que las sesiones guardadas antes de este formato se siguen leyendo
+public class SessionSerializer implements RedisSerializer<Object> {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC;
+
+    private static final byte TYPE_SECURITY_CONTEXT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INTEGER = 3;
+
+    private final JdkSerializationRedisSerializer fallback = new JdkSerializationRedisSerializer();
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        LoggedUser user = compactUser(value);
+        if (user == null && !(value instanceof Long) && !(value instanceof Integer)) {
+            return fallback.serialize(value);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            if (user != null) {
+                out.writeByte(TYPE_SECURITY_CONTEXT);
+                out.writeLong(user.getId());
+                writeNullable(out, user.getUsername());
+                writeNullable(out, user.getRole());
+                writeNullable(out, user.getName());
+            } else if (value instanceof Long number) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(number);
+            } else {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt((Integer) value);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("No se pudo serializar el atributo de sesión", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == JDK_STREAM_MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes[0] != FORMAT_VERSION) {
+            throw new SerializationException("Versión de sesión desconocida: " + bytes[0]);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            byte type = in.readByte();
+            return switch (type) {
+                case TYPE_SECURITY_CONTEXT -> {
+                    LoggedUser user = new LoggedUser(in.readLong(), readNullable(in), readNullable(in), readNullable(in));
+                    yield new SecurityContextImpl(
+                            UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+                }
+                case TYPE_LONG -> Long.valueOf(in.readLong());
+                case TYPE_INTEGER -> Integer.valueOf(in.readInt());
+                default -> throw new SerializationException("Tipo de atributo de sesión desconocido: " + type);
+            };
+        } catch (IOException e) {
+            throw new SerializationException("No se pudo leer el atributo de sesión", e);
+        }
+    }
+
+    // Sólo se compacta el contexto de un login por formulario; cualquier otra autenticación se guarda entera
+    private static LoggedUser compactUser(Object value) {
+        if (value instanceof SecurityContextImpl context) {
+            Authentication authentication = context.getAuthentication();
+            if (authentication != null && authentication.getClass() == UsernamePasswordAuthenticationToken.class
+                    && authentication.isAuthenticated()
+                    && authentication.getPrincipal() instanceof LoggedUser user && user.getId() != null) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
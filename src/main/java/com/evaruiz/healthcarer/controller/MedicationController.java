@@ -2,27 +2,37 @@ package com.evaruiz.healthcarer.controller;
 
 
 import com.evaruiz.healthcarer.model.DTO.CreateMedicationDTO;
-import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.model.DTO.ImageMetadata;
+import com.evaruiz.healthcarer.model.DTO.MedicationStockDTO;
 import com.evaruiz.healthcarer.model.MedicationDB;
-import com.evaruiz.healthcarer.model.UserDB;
+import com.evaruiz.healthcarer.security.CurrentUser;
 import com.evaruiz.healthcarer.service.ImageService;
+import com.evaruiz.healthcarer.service.ImageSize;
 import com.evaruiz.healthcarer.service.MedicationService;
-import com.evaruiz.healthcarer.service.UserService;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Comparator;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,36 +44,36 @@ public class MedicationController {
 
     private final MedicationService medicationService;
     private final ImageService imageService;
-    private final UserService userService;
+    private final CurrentUser authenticatedUser;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final CacheControl IMAGE_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
 
 
-    private static Long getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        LoggedUser current = (LoggedUser) authentication.getPrincipal();
-        return current.getId();
-    }
 
     @GetMapping("/")
     public String listMedications(Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para ver tus medicamentos.");
             return "redirect:/errorPage";
         }
-        List<MedicationDB> medications = medicationService.findMedicationsByUserId(currentUser);
-        medications.sort(Comparator.comparing(MedicationDB::getName));
+        List<MedicationStockDTO> medications = medicationService.findMedicationStockByUserId(currentUser);
         model.addAttribute("medications", medications);
         return "medications/medication-list";
     }
 
     @GetMapping("/{id}")
     public String showMedicationDetails(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para ver tu medicación.");
             return "redirect:/errorPage";
         }
-        Optional<MedicationDB> medicationOptional = medicationService.findById(id);
+        Optional<MedicationDB> medicationOptional = medicationService.findByIdAndUserId(id, currentUser);
         if (medicationOptional.isPresent()) {
             model.addAttribute("medication", medicationOptional.get());
             return "medications/medication";
@@ -74,24 +84,106 @@ public class MedicationController {
     }
 
     @GetMapping("/image/{imageName}")
-    public ResponseEntity<InputStreamResource> serveMedicationImage(@PathVariable String imageName) {
+    public ResponseEntity<?> serveMedicationImage(@PathVariable String imageName,
+                                                  @RequestParam(value = "size", defaultValue = "original") String size,
+                                                  WebRequest webRequest, HttpServletRequest request) {
         try {
-            InputStream imageStream = imageService.getImageFile(imageName);
-            if (imageStream != null) {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_JPEG)
-                        .body(new InputStreamResource(imageStream));
-            } else {
+            // En modo URL firmada el navegador descarga la imagen directamente de MinIO; con la URL en caché
+            // la redirección se responde sin consultar los metadatos del objeto
+            if (imageService.isPresignedUrls()) {
+                String url = imageService.getPresignedUrl(imageName, ImageSize.fromParam(size));
+                if (url == null) {
+                    return ResponseEntity.notFound().build();
+                }
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create(url))
+                        .cacheControl(CacheControl.maxAge(Duration.ofSeconds(imageService.getPresignedExpirySeconds() / 2)).cachePrivate())
+                        .build();
+            }
+            ImageMetadata image = imageService.getImageMetadata(imageName, ImageSize.fromParam(size));
+            if (image == null) {
                 return ResponseEntity.notFound().build();
             }
+            // Los nombres de objeto son el SHA-256 de su contenido, así que un nombre siempre corresponde a los mismos
+            // bytes: el navegador puede guardar la imagen indefinidamente y las peticiones condicionales se
+            // responden sólo con los metadatos
+            if (webRequest.checkNotModified(image.etag(), image.lastModified().toInstant().toEpochMilli())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(image.etag())
+                        .cacheControl(IMAGE_CACHE_CONTROL)
+                        .build();
+            }
+
+            long start = 0;
+            long length = image.size();
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            String rangeHeader = webRequest.getHeader(HttpHeaders.RANGE);
+            if (rangeHeader != null) {
+                List<HttpRange> ranges;
+                try {
+                    ranges = HttpRange.parseRanges(rangeHeader);
+                } catch (IllegalArgumentException e) {
+                    return rangeNotSatisfiable(image);
+                }
+                // Sólo se atienden rangos simples, que es lo que piden los navegadores para una imagen
+                if (ranges.size() != 1) {
+                    return rangeNotSatisfiable(image);
+                }
+                start = ranges.get(0).getRangeStart(image.size());
+                long end = ranges.get(0).getRangeEnd(image.size());
+                if (start >= image.size() || start > end) {
+                    return rangeNotSatisfiable(image);
+                }
+                length = end - start + 1;
+                response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + image.size());
+            }
+            response.contentType(imageContentType(image))
+                    .contentLength(length)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .eTag(image.etag())
+                    .lastModified(image.lastModified())
+                    .cacheControl(IMAGE_CACHE_CONTROL);
+
+            Path cachedFile = imageService.getCachedImageFile(image);
+            if (cachedFile == null) {
+                return response.body(new InputStreamResource(rangeHeader != null
+                        ? imageService.getImageFile(image.objectName(), start, length)
+                        : imageService.getImageFile(image.objectName())));
+            }
+            // Tomcat envía el fichero de la caché con sendfile, sin copiar los bytes a través de la JVM
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, cachedFile.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, start + length);
+                return response.build();
+            }
+            Resource file = new FileSystemResource(cachedFile);
+            return rangeHeader != null
+                    ? response.body(new ResourceRegion(file, start, length))
+                    : response.body(file);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    private static ResponseEntity<Void> rangeNotSatisfiable(ImageMetadata image) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + image.size())
+                .build();
+    }
+
+    private static MediaType imageContentType(ImageMetadata image) {
+        try {
+            return MediaType.parseMediaType(image.contentType());
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.IMAGE_JPEG;
+        }
+    }
+
     @GetMapping("/new")
     public String showCreationForm(RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para crear una medicación.");
             return "redirect:/errorPage";
@@ -104,7 +196,7 @@ public class MedicationController {
                                  @RequestParam(value = "imageFile", required = false) MultipartFile imageFile,
                                  RedirectAttributes redirectAttributes) {
         MedicationDB savedMed;
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión.");
             return "redirect:/errorPage";
@@ -121,8 +213,7 @@ public class MedicationController {
             newMedication.setInstructions(medication.instructions());
             newMedication.setDose(medication.dose());
 
-            UserDB newUser = userService.findById(currentUser);
-            newMedication.setUser(newUser);
+            newMedication.setUser(authenticatedUser.getReference());
 
             if (imageFile != null && !imageFile.isEmpty()) {
 
@@ -141,18 +232,14 @@ public class MedicationController {
 
     @GetMapping("/edit/{id}")
     public String showEditForm(@PathVariable java.lang.Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar tu medicación.");
             return "redirect:/errorPage";
         }
-        Optional<MedicationDB> medicationOptional = medicationService.findById(id);
+        Optional<MedicationDB> medicationOptional = medicationService.findByIdAndUserId(id, currentUser);
         if (medicationOptional.isPresent()) {
             MedicationDB medication = medicationOptional.get();
-            if (!medication.getUser().getId().equals(currentUser)) {
-                redirectAttributes.addFlashAttribute("error", "No estás autorizado para editar esta medicación.");
-                return "redirect:/errorPage";
-            }
             model.addAttribute("medication", medication);
             return "medications/editMedication";
         } else {
@@ -168,8 +255,12 @@ public class MedicationController {
                                    @RequestParam(value = "deleteExistingImage", defaultValue = "false") boolean deleteExistingImage,
                                    RedirectAttributes redirectAttributes) {
 
-        Long currentUser = getCurrentUser();
-        Optional<MedicationDB> optionalMedication = medicationService.findById(id);
+        Long currentUser = authenticatedUser.getId();
+        if (currentUser == null) {
+            redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar tu medicación.");
+            return "redirect:/errorPage";
+        }
+        Optional<MedicationDB> optionalMedication = medicationService.findByIdAndUserId(id, currentUser);
 
         if (optionalMedication.isEmpty()) return "redirect:/errorPage";
 
@@ -180,49 +271,37 @@ public class MedicationController {
         existingMedication.setDose(medication.getDose());
 
         try {
-            // Lógica de borrado/reemplazo en MinIO
-            if (deleteExistingImage && existingMedication.getImagePath() != null) {
-                imageService.deleteImageFile(existingMedication.getImagePath());
+            if (deleteExistingImage) {
                 existingMedication.setImagePath(null);
             }
-
             if (imageFile != null && !imageFile.isEmpty()) {
-                // Si ya tenía imagen, borramos la vieja del bucket
-                if (existingMedication.getImagePath() != null) {
-                    imageService.deleteImageFile(existingMedication.getImagePath());
-                }
-                String imagePath = imageService.uploadImage(imageFile);
-                existingMedication.setImagePath(imagePath);
+                existingMedication.setImagePath(imageService.uploadImage(imageFile));
             }
+            // La imagen anterior la borra ImageGarbageCollector cuando ya no la usa ninguna medicación
+            medicationService.saveMedication(existingMedication);
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Error en MinIO: " + e.getMessage());
             return "redirect:/errorPage";
         }
 
-        medicationService.saveMedication(existingMedication);
         return "redirect:/medications/" + id;
     }
 
     @PostMapping("/delete/{id}")
     public String deleteMedication(@PathVariable Long id,
                                    RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para borrar tu medicación.");
             return "redirect:/errorPage";
         }
 
-        Optional<MedicationDB> medicationOptional = medicationService.findById(id);
-        if (medicationOptional.isEmpty()) {
+        try {
+            medicationService.removeMedicationFromUser(id, currentUser);
+        } catch (EntityNotFoundException e) {
             redirectAttributes.addFlashAttribute("error", "La medicación que intenta borrar no existe.");
             return "redirect:/errorPage";
         }
-        MedicationDB medicationToDelete = medicationOptional.get();
-        if (!medicationToDelete.getUser().getId().equals(currentUser)) {
-            redirectAttributes.addFlashAttribute("error", "No estás autorizado para borrar esta medicación.");
-            return "redirect:/errorPage";
-        }
-        medicationService.removeMedicationFromUser(id);
         return "redirect:/medications/";
     }
 }
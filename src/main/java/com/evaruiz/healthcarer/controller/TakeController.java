@@ -3,22 +3,23 @@ package com.evaruiz.healthcarer.controller;
 import com.evaruiz.healthcarer.model.DTO.CreateTakeDTO;
 import com.evaruiz.healthcarer.model.DTO.FormattedDateTake;
 import com.evaruiz.healthcarer.model.DTO.MedicationDTO;
-import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.model.DTO.MedicationSummaryDTO;
+import com.evaruiz.healthcarer.model.DTO.TakeMedicationRow;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TakeDB;
-import com.evaruiz.healthcarer.model.UserDB;
+import com.evaruiz.healthcarer.security.CurrentUser;
 import com.evaruiz.healthcarer.service.MedicationService;
 import com.evaruiz.healthcarer.service.TakeService;
-import com.evaruiz.healthcarer.service.UserService;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDateTime;
@@ -32,58 +33,71 @@ public class TakeController {
 
     private final TakeService takeService;
     private final MedicationService medicationService;
-    private final UserService userService;
+    private final CurrentUser authenticatedUser;
 
-    private static Long getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        LoggedUser current = (LoggedUser) authentication.getPrincipal();
-        return current.getId();
-    }
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final int PAGE_SIZE = 20;
 
     @GetMapping("/")
-    public String listTakes(Model model, RedirectAttributes redirectAttributes) {
-        java.lang.Long currentUser = getCurrentUser();
+    public String listTakes(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeDate,
+                            @RequestParam(required = false) Long beforeId,
+                            Model model, RedirectAttributes redirectAttributes) {
+        java.lang.Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para ver tu historial de tomas.");
             return "redirect:/errorPage";
         }
-        List<TakeDB> takes = takeService.findTakesByUserId(currentUser);
+        // Se pide una toma de más para saber si existe una página siguiente
+        List<TakeMedicationRow> rows = takeService.findTakeRowsPage(currentUser, beforeDate, beforeId, PAGE_SIZE + 1);
         List<FormattedDateTake> formattedTakes = new ArrayList<>();
-        for (TakeDB take : takes) {
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-            String formattedDate = take.getDate().format(dateFormatter);
-            String formattedTime = take.getDate().format(timeFormatter);
-            List<MedicationDB> medications = take.getMedications();
-            medications.sort(Comparator.comparing(MedicationDB::getName));
-            formattedTakes.add(new FormattedDateTake(
-                    take.getId(),
-                    formattedDate,
-                    formattedTime,
-                    medications));
-        }
-        formattedTakes.sort(Comparator.comparing(FormattedDateTake::date).reversed());
+        FormattedDateTake current = null;
+        TakeMedicationRow cursor = null;
+        boolean hasNextPage = false;
+        for (TakeMedicationRow row : rows) {
+            if (current == null || !current.id().equals(row.takeId())) {
+                if (formattedTakes.size() == PAGE_SIZE) {
+                    hasNextPage = true;
+                    break;
+                }
+                cursor = row;
+                current = new FormattedDateTake(
+                        row.takeId(),
+                        row.date().format(DATE_FORMATTER),
+                        row.date().format(TIME_FORMATTER),
+                        new ArrayList<>());
+                formattedTakes.add(current);
+            }
+            if (row.medicationId() != null) {
+                current.medications().add(new MedicationSummaryDTO(row.medicationId(), row.medicationName(), row.medicationDose()));
+            }
+        }
         model.addAttribute("takes", formattedTakes);
+        model.addAttribute("isPaged", beforeId != null);
+        if (hasNextPage) {
+            model.addAttribute("nextBeforeDate", cursor.date().toString());
+            model.addAttribute("nextBeforeId", cursor.takeId());
+        }
         return "takes/takes";
 
     }
 
     @GetMapping("/{id}")
     public String showTakeDetails(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para ver tu toma.");
             return "redirect:/errorPage";
         }
-        Optional<TakeDB> takeOptional = takeService.findById(id);
+        Optional<TakeDB> takeOptional = takeService.findWithMedicationsByIdAndUserId(id, currentUser);
         if (takeOptional.isPresent()) {
             TakeDB take = takeOptional.get();
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-            String formattedDate = take.getDate().format(dateFormatter);
-            String formattedTime = take.getDate().format(timeFormatter);
-            List<MedicationDB> medications = take.getMedications();
-            medications.sort(Comparator.comparing(MedicationDB::getName));
+            String formattedDate = take.getDate().format(DATE_FORMATTER);
+            String formattedTime = take.getDate().format(TIME_FORMATTER);
+            List<MedicationSummaryDTO> medications = take.getMedications().stream()
+                    .sorted(Comparator.comparing(MedicationDB::getName))
+                    .map(MedicationSummaryDTO::from)
+                    .toList();
             model.addAttribute("take", new FormattedDateTake(take.getId(), formattedDate, formattedTime, medications));
             return "takes/take";
         } else {
@@ -94,7 +108,7 @@ public class TakeController {
 
     @GetMapping("/new")
     public String showCreateForm(Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para crear una toma.");
             return "redirect:/errorPage";
@@ -106,12 +120,12 @@ public class TakeController {
 
     @GetMapping("/edit/{id}")
     public String showEditForm(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar una toma.");
             return "redirect:/errorPage";
         }
-        Optional<TakeDB> takeOptional = takeService.findById(id);
+        Optional<TakeDB> takeOptional = takeService.findWithMedicationsByIdAndUserId(id, currentUser);
         if (takeOptional.isPresent()) {
             TakeDB take = takeOptional.get();
             List<MedicationDB> medications = medicationService.findMedicationsByUserId(currentUser);
@@ -131,7 +145,7 @@ public class TakeController {
 
     @PostMapping("/save")
     public String saveTake(CreateTakeDTO take, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para guardar una toma.");
             return "redirect:/errorPage";
@@ -144,27 +158,16 @@ public class TakeController {
             redirectAttributes.addFlashAttribute("error", "La fecha y hora de la toma debe ser anterior a la actual.");
             return "redirect:/errorPage";
         }
-        TakeDB newTake = new TakeDB();
-        newTake.setDate(take.date());
-        List<MedicationDB> medications = new ArrayList<>();
-        for (Long medicationId : take.medications()) {
-            Optional<MedicationDB> medicationOptional = medicationService.findById(medicationId);
-            if (medicationOptional.isPresent()) {
-                medications.add(medicationOptional.get());
-                medicationService.discountMedicationStock(medicationId);
-            } else {
-                redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
-
-            }
-        }
-        newTake.setMedications(medications);
-        UserDB newUser = userService.findById(currentUser);
-        if (newUser == null) {
-            redirectAttributes.addFlashAttribute("error", "El usuario no existe.");
+        TakeDB newTake;
+        try {
+            newTake = takeService.recordTake(take.date(), Arrays.asList(take.medications()), authenticatedUser.getReference());
+        } catch (EntityNotFoundException e) {
+            redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
+            return "redirect:/errorPage";
+        } catch (IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
             return "redirect:/errorPage";
         }
-        newTake.setUser(newUser);
-        takeService.save(newTake);
         return "redirect:/takes/" + newTake.getId();
     }
 
@@ -172,7 +175,7 @@ public class TakeController {
 
     @PostMapping("/edit/{id}")
     public String editTake(@PathVariable Long id, CreateTakeDTO take, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar una toma.");
             return "redirect:/errorPage";
@@ -181,24 +184,17 @@ public class TakeController {
             redirectAttributes.addFlashAttribute("error", "Todos los campos son obligatorios.");
             return "redirect:/errorPage";
         }
-        Optional<TakeDB> takeOptional = takeService.findById(id);
+        Optional<TakeDB> takeOptional = takeService.findByIdAndUserId(id, currentUser);
         if (takeOptional.isPresent()) {
             TakeDB existingTake = takeOptional.get();
-            if (!existingTake.getUser().getId().equals(currentUser)) {
-                redirectAttributes.addFlashAttribute("error", "No tienes permiso para editar esta toma.");
+            List<MedicationDB> medications;
+            try {
+                medications = medicationService.findAllByIdAndUserId(Arrays.asList(take.medications()), currentUser);
+            } catch (EntityNotFoundException e) {
+                redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
                 return "redirect:/errorPage";
             }
             existingTake.setDate(take.date());
-            List<MedicationDB> medications = new ArrayList<>();
-            for (Long medicationId : take.medications()) {
-                Optional<MedicationDB> medicationOptional = medicationService.findById(medicationId);
-                if (medicationOptional.isPresent()) {
-                    medications.add(medicationOptional.get());
-                } else {
-                    redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
-
-                }
-            }
             existingTake.setMedications(medications);
             takeService.save(existingTake);
         } else {
@@ -210,23 +206,12 @@ public class TakeController {
 
     @PostMapping("/delete/{id}")
     public String deleteTake(@PathVariable Long id, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para eliminar una toma.");
             return "redirect:/errorPage";
         }
-        Optional<TakeDB> takeOptional = takeService.findById(id);
-        if (takeOptional.isPresent()) {
-            TakeDB take = takeOptional.get();
-            if (take.getUser().getId().equals(currentUser)) {
-                userService.removeTakeFromUser(currentUser, take.getId());
-                takeService.deleteById(take.getId());
-
-            } else {
-                redirectAttributes.addFlashAttribute("error", "No tienes permiso para eliminar esta toma.");
-                return "redirect:/errorPage";
-            }
-        } else {
+        if (!takeService.deleteByIdAndUserId(id, currentUser)) {
             redirectAttributes.addFlashAttribute("error", "La toma que intenta eliminar no existe.");
             return "redirect:/errorPage";
         }
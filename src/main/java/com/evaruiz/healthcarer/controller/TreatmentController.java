@@ -2,17 +2,16 @@ package com.evaruiz.healthcarer.controller;
 
 import com.evaruiz.healthcarer.model.DTO.CreateTreatmentDTO;
 import com.evaruiz.healthcarer.model.DTO.FormattedDateTreatment;
-import com.evaruiz.healthcarer.model.DTO.LoggedUser;
 import com.evaruiz.healthcarer.model.DTO.MedicationDTO;
+import com.evaruiz.healthcarer.model.DTO.MedicationSummaryDTO;
+import com.evaruiz.healthcarer.model.DTO.TreatmentMedicationRow;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TreatmentDB;
-import com.evaruiz.healthcarer.model.UserDB;
+import com.evaruiz.healthcarer.security.CurrentUser;
 import com.evaruiz.healthcarer.service.MedicationService;
 import com.evaruiz.healthcarer.service.TreatmentService;
-import com.evaruiz.healthcarer.service.UserService;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -23,6 +22,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -34,37 +34,35 @@ public class TreatmentController {
 
     private final TreatmentService treatmentService;
     private final MedicationService medicationService;
-    private final UserService userService;
+    private final CurrentUser authenticatedUser;
 
-    private static java.lang.Long getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        LoggedUser current = (LoggedUser) authentication.getPrincipal();
-        return current.getId();
-    }
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
 
     @GetMapping("/")
     public String getTreatments(Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para ver tu historial de tomas.");
             return "redirect:/errorPage";
         }
-        List<TreatmentDB> treatments = treatmentService.findTreatmentsByUserId(currentUser);
+        List<TreatmentMedicationRow> rows = treatmentService.findTreatmentRowsByUserId(currentUser);
         List<FormattedDateTreatment> formattedTreatments = new ArrayList<>();
-        for (TreatmentDB treatment : treatments) {
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-            String formattedStartDate = treatment.getStartDate().format(dateFormatter);
-            String formattedEndTime = treatment.getEndDate().format(dateFormatter);
-            List<MedicationDB> medications = treatment.getMedications();
-            medications.sort(Comparator.comparing(MedicationDB::getName));
-            formattedTreatments.add(new FormattedDateTreatment(
-                    treatment.getId(),
-                    treatment.getName(),
-                    formattedStartDate,
-                    formattedEndTime,
-                    treatment.getDispensingFrequency(),
-                    medications
-            ));
+        FormattedDateTreatment current = null;
+        for (TreatmentMedicationRow row : rows) {
+            if (current == null || !current.id().equals(row.treatmentId())) {
+                current = new FormattedDateTreatment(
+                        row.treatmentId(),
+                        row.name(),
+                        row.startDate().format(DATE_FORMATTER),
+                        row.endDate().format(DATE_FORMATTER),
+                        row.dispensingFrequency(),
+                        new ArrayList<>()
+                );
+                formattedTreatments.add(current);
+            }
+            if (row.medicationId() != null) {
+                current.medications().add(new MedicationSummaryDTO(row.medicationId(), row.medicationName(), row.medicationDose()));
+            }
         }
         model.addAttribute("treatments", formattedTreatments);
         return "treatments/treatments";
@@ -72,7 +70,7 @@ public class TreatmentController {
 
     @GetMapping("/new")
     public String newTreatment(Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para crear un nuevo tratamiento.");
             return "redirect:/errorPage";
@@ -84,22 +82,23 @@ public class TreatmentController {
 
     @GetMapping("/{id}")
     public String getTreatmentDetails(@PathVariable java.lang.Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para ver los detalles del tratamiento.");
             return "redirect:/errorPage";
         }
-        Optional<TreatmentDB> treatmentOptional = treatmentService.findById(id);
+        Optional<TreatmentDB> treatmentOptional = treatmentService.findWithMedicationsByIdAndUserId(id, currentUser);
         if (treatmentOptional.isEmpty()) {
             redirectAttributes.addFlashAttribute("error", "El tratamiento no existe o no está disponible.");
             return "redirect:/errorPage";
         }
         TreatmentDB treatment = treatmentOptional.get();
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-        String formattedStartDate = treatment.getStartDate().format(dateFormatter);
-        String formattedEndDate = treatment.getEndDate().format(dateFormatter);
-        List<MedicationDB> medications = treatment.getMedications();
-        medications.sort(Comparator.comparing(MedicationDB::getName));
+        String formattedStartDate = treatment.getStartDate().format(DATE_FORMATTER);
+        String formattedEndDate = treatment.getEndDate().format(DATE_FORMATTER);
+        List<MedicationSummaryDTO> medications = treatment.getMedications().stream()
+                .sorted(Comparator.comparing(MedicationDB::getName))
+                .map(MedicationSummaryDTO::from)
+                .toList();
         model.addAttribute("treatment", new FormattedDateTreatment(
                 treatment.getId(),
                 treatment.getName(),
@@ -112,12 +111,12 @@ public class TreatmentController {
     }
     @GetMapping("/edit/{id}")
     public String editTreatment(@PathVariable java.lang.Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar un tratamiento.");
             return "redirect:/errorPage";
         }
-        Optional<TreatmentDB> treatmentOptional = treatmentService.findById(id);
+        Optional<TreatmentDB> treatmentOptional = treatmentService.findWithMedicationsByIdAndUserId(id, currentUser);
         if (treatmentOptional.isEmpty()) {
             redirectAttributes.addFlashAttribute("error", "El tratamiento no existe o no está disponible.");
             return "redirect:/errorPage";
@@ -137,7 +136,7 @@ public class TreatmentController {
 
     @PostMapping("/save")
     public String createTreatment(CreateTreatmentDTO treatment, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para crear un nuevo tratamiento.");
             return "redirect:/errorPage";
@@ -150,15 +149,12 @@ public class TreatmentController {
             redirectAttributes.addFlashAttribute("error", "La fecha de finalización no puede ser anterior a la fecha de inicio.");
             return "redirect:/errorPage";
         }
-        List<MedicationDB> medications = new ArrayList<>();
-        for (java.lang.Long medicationId : treatment.medicationIds()) {
-            Optional<MedicationDB> medicationOptional = medicationService.findById(medicationId);
-            if (medicationOptional.isPresent()) {
-                medications.add(medicationOptional.get());
-            } else {
-                redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
-                return "redirect:/errorPage";
-            }
+        List<MedicationDB> medications;
+        try {
+            medications = medicationService.findAllByIdAndUserId(Arrays.asList(treatment.medicationIds()), currentUser);
+        } catch (EntityNotFoundException e) {
+            redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
+            return "redirect:/errorPage";
         }
         TreatmentDB newTreatment = new TreatmentDB();
         newTreatment.setName(treatment.name());
@@ -167,24 +163,19 @@ public class TreatmentController {
         newTreatment.setLastTakenDate(treatment.startDate());
         newTreatment.setDispensingFrequency(treatment.dispensingFrequency());
         newTreatment.setMedications(medications);
-        UserDB newUser = userService.findById(currentUser);
-        if (newUser == null) {
-            redirectAttributes.addFlashAttribute("error", "El usuario no existe.");
-            return "redirect:/errorPage";
-        }
-        newTreatment.setUser(newUser);
+        newTreatment.setUser(authenticatedUser.getReference());
         TreatmentDB t = treatmentService.save(newTreatment);
         return "redirect:/treatments/" + t.getId();
     }
 
     @PostMapping("/update/{id}")
     public String updateTreatment(@PathVariable java.lang.Long id, CreateTreatmentDTO treatment, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar un tratamiento.");
             return "redirect:/errorPage";
         }
-        Optional<TreatmentDB> treatmentOptional = treatmentService.findById(id);
+        Optional<TreatmentDB> treatmentOptional = treatmentService.findByIdAndUserId(id, currentUser);
         if (treatmentOptional.isEmpty()) {
             redirectAttributes.addFlashAttribute("error", "El tratamiento no existe o no está disponible.");
             return "redirect:/treatments/";
@@ -198,15 +189,12 @@ public class TreatmentController {
             redirectAttributes.addFlashAttribute("error", "La fecha de finalización no puede ser anterior a la fecha de inicio.");
             return "redirect:/errorPage";
         }
-        List<MedicationDB> medications = new ArrayList<>();
-        for (java.lang.Long medicationId : treatment.medicationIds()) {
-            Optional<MedicationDB> medicationOptional = medicationService.findById(medicationId);
-            if (medicationOptional.isPresent()) {
-                medications.add(medicationOptional.get());
-            } else {
-                redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
-                return "redirect:/errorPage";
-            }
+        List<MedicationDB> medications;
+        try {
+            medications = medicationService.findAllByIdAndUserId(Arrays.asList(treatment.medicationIds()), currentUser);
+        } catch (EntityNotFoundException e) {
+            redirectAttributes.addFlashAttribute("error", "Una o más medicaciones no existen.");
+            return "redirect:/errorPage";
         }
         existingTreatment.setName(treatment.name());
         existingTreatment.setStartDate(treatment.startDate());
@@ -219,17 +207,15 @@ public class TreatmentController {
 
     @PostMapping("/delete/{id}")
     public String deleteTreatment(@PathVariable java.lang.Long id, RedirectAttributes redirectAttributes) {
-        Long currentUser = getCurrentUser();
+        Long currentUser = authenticatedUser.getId();
         if (currentUser == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para eliminar un tratamiento.");
             return "redirect:/errorPage";
         }
-        Optional<TreatmentDB> treatmentOptional = treatmentService.findById(id);
-        if (treatmentOptional.isEmpty()) {
+        if (!treatmentService.deleteByIdAndUserId(id, currentUser)) {
             redirectAttributes.addFlashAttribute("error", "El tratamiento no existe o no está disponible.");
             return "redirect:/treatments/";
         }
-        treatmentService.deleteById(id);
         return "redirect:/treatments/";
     }
 }
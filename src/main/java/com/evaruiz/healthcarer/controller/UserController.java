@@ -1,13 +1,11 @@
 package com.evaruiz.healthcarer.controller;
 
 
-import com.evaruiz.healthcarer.model.DTO.LoggedUser;
 import com.evaruiz.healthcarer.model.DTO.RegisterUserDTO;
 import com.evaruiz.healthcarer.model.UserDB;
+import com.evaruiz.healthcarer.security.CurrentUser;
 import com.evaruiz.healthcarer.service.UserService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,12 +19,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class UserController {
 
     private final UserService userService;
-
-    private static Long getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        LoggedUser current = (LoggedUser) authentication.getPrincipal();
-        return current.getId();
-    }
+    private final CurrentUser authenticatedUser;
 
     @GetMapping("/errorPage")
     public String errorPage() {
@@ -35,7 +28,7 @@ public class UserController {
 
     @GetMapping("/")
     public String home(Model model, RedirectAttributes redirectAttributes) {
-        Long user = getCurrentUser();
+        Long user = authenticatedUser.getId();
         if (user == null) {
             redirectAttributes.addFlashAttribute("error", "Debes iniciar sesión para acceder a esta página");
             return "redirect:/login";
@@ -72,39 +65,31 @@ public class UserController {
 
     @GetMapping("/users/{id}")
     public String userProfile(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long userid = getCurrentUser();
-        UserDB user = userService.findById(id);
-        if (user == null) {
-            redirectAttributes.addFlashAttribute("error", "Usuario no encontrado");
-            return "redirect:/errorPage";
-        }
-        if (!userid.equals(id)) {
+        Long userid = authenticatedUser.getId();
+        if (!id.equals(userid)) {
             redirectAttributes.addFlashAttribute("error", "No tienes permiso para ver este perfil");
             return "redirect:/errorPage";
         }
+        UserDB user = authenticatedUser.get();
         model.addAttribute("user", user);
         return "users/user-profile";
     }
 
     @GetMapping("/users/edit/{id}")
     public String editUserProfile(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
-        Long userid = getCurrentUser();
-        UserDB user = userService.findById(id);
-        if (user == null) {
-            redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar tu perfil");
-            return "redirect:/errorPage";
-        }
-        if (!userid.equals(id)) {
+        Long userid = authenticatedUser.getId();
+        if (!id.equals(userid)) {
             redirectAttributes.addFlashAttribute("error", "No tienes permiso para editar este perfil");
             return "redirect:/errorPage";
         }
+        UserDB user = authenticatedUser.get();
         model.addAttribute("user", user);
         return "users/editProfile";
     }
 
     @PostMapping("/users/edit/{id}")
     public String updateUserProfile(@PathVariable Long id, RegisterUserDTO updatedUser, RedirectAttributes redirectAttributes) {
-        Long user = getCurrentUser();
+        Long user = authenticatedUser.getId();
         if (user == null) {
             redirectAttributes.addFlashAttribute("error", "Debes haber iniciado sesión para editar tu perfil");
             return "redirect:/errorPage";
@@ -122,15 +107,11 @@ public class UserController {
             redirectAttributes.addFlashAttribute("error", "El email no puede estar vacío");
             return "redirect:/errorPage";
         }
-        if (userService.findByEmail(updatedUser.email()) && !updatedUser.email().equals(userService.findById(user).getEmail())) {
+        UserDB newUser = authenticatedUser.get();
+        if (!updatedUser.email().equals(newUser.getEmail()) && userService.findByEmail(updatedUser.email())) {
             redirectAttributes.addFlashAttribute("error", "El email ya está en uso");
             return "redirect:/errorPage";
         }
-        UserDB newUser = userService.findById(user);
-        if (newUser == null) {
-            redirectAttributes.addFlashAttribute("error", "El usuario no existe.");
-            return "redirect:/errorPage";
-        }
         UserDB u = userService.updateUserProfile(newUser, updatedUser);
         return "redirect:/users/" + u.getId();
     }
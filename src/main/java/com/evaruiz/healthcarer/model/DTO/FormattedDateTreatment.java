@@ -1,7 +1,5 @@
 package com.evaruiz.healthcarer.model.DTO;
 
-import com.evaruiz.healthcarer.model.MedicationDB;
-
 import java.util.List;
 
 public record FormattedDateTreatment(
@@ -10,6 +8,6 @@ public record FormattedDateTreatment(
         String startDate,
         String endDate,
         Float dispensingFrequency,
-        List<MedicationDB> medications
+        List<MedicationSummaryDTO> medications
 ) {
 }
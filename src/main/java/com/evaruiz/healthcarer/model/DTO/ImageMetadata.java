@@ -0,0 +1,12 @@
+package com.evaruiz.healthcarer.model.DTO;
+
+import java.time.ZonedDateTime;
+
+public record ImageMetadata(
+        String objectName,
+        String etag,
+        ZonedDateTime lastModified,
+        long size,
+        String contentType
+) {
+}
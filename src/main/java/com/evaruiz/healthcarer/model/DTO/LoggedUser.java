@@ -1,6 +1,7 @@
 package com.evaruiz.healthcarer.model.DTO;
 
 import com.evaruiz.healthcarer.model.UserDB;
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -8,7 +9,7 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
 
-public class LoggedUser implements UserDetails, Serializable {
+public class LoggedUser implements UserDetails, CredentialsContainer, Serializable {
     private static final long serialVersionUID = 1L;
 
     private Long id;
@@ -25,6 +26,20 @@ public class LoggedUser implements UserDetails, Serializable {
         this.name = user.getName();
     }
 
+    // Usuario reconstruido desde la sesión: nunca lleva el hash de la contraseña
+    public LoggedUser(Long id, String email, String role, String name) {
+        this.id = id;
+        this.email = email;
+        this.role = role;
+        this.name = name;
+    }
+
+    // Spring Security lo llama tras autenticar, así el hash no llega a guardarse en la sesión
+    @Override
+    public void eraseCredentials() {
+        this.password = null;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority(role));
@@ -32,6 +47,7 @@ public class LoggedUser implements UserDetails, Serializable {
 
     public Long getId() { return id; }
     public String getName() { return name; }
+    public String getRole() { return role; }
     @Override public String getPassword() { return password; }
     @Override public String getUsername() { return email; }
     @Override public boolean isAccountNonExpired() { return true; }
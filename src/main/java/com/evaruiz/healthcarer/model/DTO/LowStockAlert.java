@@ -0,0 +1,8 @@
+package com.evaruiz.healthcarer.model.DTO;
+
+public record LowStockAlert(
+        Long medicationId,
+        String medicationName,
+        String email
+) {
+}
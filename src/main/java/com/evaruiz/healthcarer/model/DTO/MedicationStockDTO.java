@@ -0,0 +1,8 @@
+package com.evaruiz.healthcarer.model.DTO;
+
+public record MedicationStockDTO(
+        Long id,
+        String name,
+        Float stock
+) {
+}
@@ -0,0 +1,13 @@
+package com.evaruiz.healthcarer.model.DTO;
+
+import com.evaruiz.healthcarer.model.MedicationDB;
+
+public record MedicationSummaryDTO(
+        Long id,
+        String name,
+        Float dose
+) {
+    public static MedicationSummaryDTO from(MedicationDB medication) {
+        return new MedicationSummaryDTO(medication.getId(), medication.getName(), medication.getDose());
+    }
+}
@@ -0,0 +1,12 @@
+package com.evaruiz.healthcarer.model.DTO;
+
+import java.time.LocalDateTime;
+
+public record TakeMedicationRow(
+        Long takeId,
+        LocalDateTime date,
+        Long medicationId,
+        String medicationName,
+        Float medicationDose
+) {
+}
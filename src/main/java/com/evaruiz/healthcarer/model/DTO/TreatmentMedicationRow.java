@@ -0,0 +1,15 @@
+package com.evaruiz.healthcarer.model.DTO;
+
+import java.time.LocalDateTime;
+
+public record TreatmentMedicationRow(
+        Long treatmentId,
+        String name,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        Float dispensingFrequency,
+        Long medicationId,
+        String medicationName,
+        Float medicationDose
+) {
+}
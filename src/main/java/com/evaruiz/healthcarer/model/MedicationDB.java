@@ -4,15 +4,20 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
 
 
 @Entity
-@Table(name = "medications")
+@Table(name = "medications", indexes = @Index(name = "idx_medications_user_name", columnList = "user_id, name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,15 +41,18 @@ public class MedicationDB {
 
     private String imagePath;
 
-    @ManyToMany(mappedBy = "medications" , fetch = FetchType.EAGER)
+    @ManyToMany(mappedBy = "medications")
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<TreatmentDB> treatments = new ArrayList<>();
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private UserDB user;
 
-    @ManyToMany(mappedBy = "medications", fetch = FetchType.EAGER)
+    @ManyToMany(mappedBy = "medications")
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<TakeDB> takes = new ArrayList<>();
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -13,7 +14,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "takes")
+@Table(name = "takes", indexes = @Index(name = "idx_takes_user_date", columnList = "user_id, date"))
+@NamedEntityGraph(name = "TakeDB.medications", attributeNodes = @NamedAttributeNode("medications"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,17 +30,19 @@ public class TakeDB {
     @DateTimeFormat(pattern = "dd-MM-yyyy HH:mm")
     private LocalDateTime date;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
     @JoinTable(
             name = "take_medication",
             joinColumns = @JoinColumn(name = "take_id"),
             inverseJoinColumns = @JoinColumn(name = "medication_id")
     )
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<MedicationDB> medications = new ArrayList<>();
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private UserDB user;
 
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -14,7 +15,11 @@ import java.util.*;
 
 
 @Entity
-@Table(name = "treatments")
+@Table(name = "treatments", indexes = {
+        @Index(name = "idx_treatments_next_intake", columnList = "next_intake_date"),
+        @Index(name = "idx_treatments_user_id", columnList = "user_id, id")
+})
+@NamedEntityGraph(name = "TreatmentDB.medications", attributeNodes = @NamedAttributeNode("medications"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,19 +47,43 @@ public class TreatmentDB {
     @Column(nullable = false)
     private Float dispensingFrequency;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @Column(name = "next_intake_date")
+    private LocalDateTime nextIntakeDate;
+
+    @ManyToMany
     @JoinTable(
             name = "treatment_medication",
             joinColumns = @JoinColumn(name = "treatment_id"),
             inverseJoinColumns = @JoinColumn(name = "medication_id")
     )
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<MedicationDB> medications = new ArrayList<>();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private UserDB user;
 
+    public TreatmentDB(Long id, String name, LocalDateTime startDate, LocalDateTime endDate, LocalDateTime lastTakenDate,
+                       Float dispensingFrequency, List<MedicationDB> medications, UserDB user) {
+        this(id, name, startDate, endDate, lastTakenDate, dispensingFrequency, null, medications, user);
+        nextIntakeDate = computeNextIntake();
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void scheduleNextIntake() {
+        nextIntakeDate = computeNextIntake();
+    }
+
+    private LocalDateTime computeNextIntake() {
+        if (lastTakenDate == null || dispensingFrequency == null) {
+            return null;
+        }
+        return lastTakenDate.plusHours(dispensingFrequency.longValue());
+    }
+
     public boolean checkIntakeDates() {
         LocalDateTime objectiveDate = lastTakenDate.plusHours(dispensingFrequency.longValue());
         LocalDateTime now = LocalDateTime.now();
@@ -1,18 +1,39 @@
 package com.evaruiz.healthcarer.repository;
 
+import com.evaruiz.healthcarer.model.DTO.MedicationStockDTO;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 
 
 @Repository
-public interface MedicationRepository extends JpaRepository<MedicationDB, Long> {
+public interface MedicationRepository extends JpaRepository<MedicationDB, Long>, MedicationStockRepository {
 
     @Query("SELECT m FROM MedicationDB m WHERE m.user.id = ?1")
     List<MedicationDB> findByUserId(Long userId);
 
+    @Query("SELECT m FROM MedicationDB m WHERE m.id = ?1 AND m.user.id = ?2")
+    Optional<MedicationDB> findByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT m FROM MedicationDB m WHERE m.id IN ?1 AND m.user.id = ?2")
+    List<MedicationDB> findAllByIdInAndUserId(Collection<Long> ids, Long userId);
+
+    @Query("SELECT new com.evaruiz.healthcarer.model.DTO.MedicationStockDTO(m.id, m.name, m.stock) " +
+            "FROM MedicationDB m WHERE m.user.id = ?1 ORDER BY m.name")
+    List<MedicationStockDTO> findStockByUserId(Long userId);
+
+    // Las medicaciones borradas se quedan sin usuario, así que sus imágenes ya no cuentan como usadas
+    @Query("SELECT DISTINCT m.imagePath FROM MedicationDB m WHERE m.imagePath IS NOT NULL AND m.user IS NOT NULL")
+    Set<String> findReferencedImagePaths();
+
+    @Query("SELECT DISTINCT m.imagePath FROM MedicationDB m WHERE m.imagePath IN ?1 AND m.user IS NOT NULL")
+    Set<String> findReferencedImagePathsIn(Collection<String> imagePaths);
+
 }
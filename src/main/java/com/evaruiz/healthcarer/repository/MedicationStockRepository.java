@@ -0,0 +1,10 @@
+package com.evaruiz.healthcarer.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MedicationStockRepository {
+
+    List<Long> discountStock(Collection<Long> medicationIds);
+
+}
@@ -0,0 +1,42 @@
+package com.evaruiz.healthcarer.repository;
+
+import com.evaruiz.healthcarer.config.CacheInvalidator;
+import com.evaruiz.healthcarer.model.MedicationDB;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MedicationStockRepositoryImpl implements MedicationStockRepository {
+
+    private static final String DISCOUNT_STOCK = "UPDATE medications SET stock = stock - 1 WHERE id = ? AND stock > 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidator cacheInvalidator;
+
+    // Un UPDATE condicional por medicación enviado en un único lote: el descuento es atómico en la base de datos
+    // y el recuento de filas de cada sentencia indica qué medicaciones no tenían stock
+    @Override
+    public List<Long> discountStock(Collection<Long> medicationIds) {
+        List<Long> ids = medicationIds.stream().distinct().toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        int[][] updated = jdbcTemplate.batchUpdate(DISCOUNT_STOCK, ids, ids.size(),
+                (statement, id) -> statement.setLong(1, id));
+
+        // El UPDATE no pasa por Hibernate, así que la caché de segundo nivel no se entera sola del cambio
+        cacheInvalidator.evict(MedicationDB.class, ids);
+
+        List<Long> outOfStock = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (updated[0][i] == 0) {
+                outOfStock.add(ids.get(i));
+            }
+        }
+        return outOfStock;
+    }
+}
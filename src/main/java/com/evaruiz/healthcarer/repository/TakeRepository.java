@@ -1,14 +1,49 @@
 package com.evaruiz.healthcarer.repository;
 
+import com.evaruiz.healthcarer.model.DTO.TakeMedicationRow;
 import com.evaruiz.healthcarer.model.TakeDB;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TakeRepository extends JpaRepository<TakeDB, Long> {
+    @EntityGraph("TakeDB.medications")
     @Query("SELECT t FROM TakeDB t WHERE t.user.id = ?1")
     List<TakeDB> findAllByUserId(Long id);
+
+    @EntityGraph("TakeDB.medications")
+    @Query("SELECT t FROM TakeDB t WHERE t.id = ?1")
+    Optional<TakeDB> findWithMedicationsById(Long id);
+
+    // Las comprobaciones de propiedad filtran por usuario en la propia consulta: una toma ajena no se llega a cargar
+    @Query("SELECT t FROM TakeDB t WHERE t.id = ?1 AND t.user.id = ?2")
+    Optional<TakeDB> findByIdAndUserId(Long id, Long userId);
+
+    @EntityGraph("TakeDB.medications")
+    @Query("SELECT t FROM TakeDB t WHERE t.id = ?1 AND t.user.id = ?2")
+    Optional<TakeDB> findWithMedicationsByIdAndUserId(Long id, Long userId);
+
+    // Hibernate borra también las filas de take_medication antes de la toma
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM TakeDB t WHERE t.id = ?1 AND t.user.id = ?2")
+    int deleteByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT t.id FROM TakeDB t WHERE t.user.id = ?1 ORDER BY t.date DESC, t.id DESC")
+    List<Long> findLatestTakeIds(Long userId, Limit limit);
+
+    @Query("SELECT t.id FROM TakeDB t WHERE t.user.id = ?1 AND (t.date < ?2 OR (t.date = ?2 AND t.id < ?3)) " +
+            "ORDER BY t.date DESC, t.id DESC")
+    List<Long> findTakeIdsBefore(Long userId, LocalDateTime date, Long id, Limit limit);
+
+    @Query("SELECT new com.evaruiz.healthcarer.model.DTO.TakeMedicationRow(t.id, t.date, m.id, m.name, m.dose) " +
+            "FROM TakeDB t LEFT JOIN t.medications m WHERE t.id IN ?1 ORDER BY t.date DESC, t.id DESC, m.name")
+    List<TakeMedicationRow> findTakeRowsByIds(List<Long> ids);
 }
@@ -1,18 +1,57 @@
 package com.evaruiz.healthcarer.repository;
 
+import com.evaruiz.healthcarer.model.DTO.LowStockAlert;
+import com.evaruiz.healthcarer.model.DTO.TreatmentMedicationRow;
 import com.evaruiz.healthcarer.model.TreatmentDB;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TreatmentRepository extends JpaRepository<TreatmentDB, Long> {
 
 
+    @EntityGraph("TreatmentDB.medications")
     @Query("SELECT t FROM TreatmentDB t WHERE t.user.id = ?1")
     List<TreatmentDB> findAllByUserId(Long id);
 
+    @EntityGraph("TreatmentDB.medications")
+    @Query("SELECT t FROM TreatmentDB t WHERE t.id = ?1")
+    Optional<TreatmentDB> findWithMedicationsById(Long id);
+
+    @Query("SELECT t FROM TreatmentDB t WHERE t.id = ?1 AND t.user.id = ?2")
+    Optional<TreatmentDB> findByIdAndUserId(Long id, Long userId);
+
+    @EntityGraph("TreatmentDB.medications")
+    @Query("SELECT t FROM TreatmentDB t WHERE t.id = ?1 AND t.user.id = ?2")
+    Optional<TreatmentDB> findWithMedicationsByIdAndUserId(Long id, Long userId);
+
+    // Hibernate borra también las filas de treatment_medication antes del tratamiento
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM TreatmentDB t WHERE t.id = ?1 AND t.user.id = ?2")
+    int deleteByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT new com.evaruiz.healthcarer.model.DTO.TreatmentMedicationRow(t.id, t.name, t.startDate, t.endDate, " +
+            "t.dispensingFrequency, m.id, m.name, m.dose) " +
+            "FROM TreatmentDB t LEFT JOIN t.medications m WHERE t.user.id = ?1 ORDER BY t.id, m.name")
+    List<TreatmentMedicationRow> findTreatmentRowsByUserId(Long userId);
+
+    @EntityGraph(attributePaths = {"user", "medications"})
+    @Query("SELECT t FROM TreatmentDB t WHERE t.nextIntakeDate BETWEEN ?1 AND ?2")
+    List<TreatmentDB> findDueForIntake(LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT t FROM TreatmentDB t WHERE t.nextIntakeDate IS NULL AND t.lastTakenDate IS NOT NULL")
+    List<TreatmentDB> findUnscheduled();
+
+    @Query("SELECT DISTINCT new com.evaruiz.healthcarer.model.DTO.LowStockAlert(m.id, m.name, u.email) " +
+            "FROM TreatmentDB t JOIN t.medications m JOIN t.user u WHERE m.stock <= ?1")
+    List<LowStockAlert> findLowStockAlerts(Float threshold);
+
 
 }
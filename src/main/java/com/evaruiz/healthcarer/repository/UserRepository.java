@@ -1,8 +1,12 @@
 package com.evaruiz.healthcarer.repository;
 
+import com.evaruiz.healthcarer.config.CacheInvalidator;
 import com.evaruiz.healthcarer.model.UserDB;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 
@@ -11,5 +15,9 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<UserDB, Long> {
     @Query("SELECT u FROM UserDB u WHERE u.email = :email")
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = CacheInvalidator.QUERY_REGION_PREFIX + "UserDB")
+    })
     Optional<UserDB> findByEmail(String email);
 }
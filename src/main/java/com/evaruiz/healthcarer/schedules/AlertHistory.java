@@ -0,0 +1,42 @@
+package com.evaruiz.healthcarer.schedules;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class AlertHistory {
+
+    private static final String LOW_STOCK_KEY = "healthcarer:alerts:low-stock";
+
+    private final StringRedisTemplate redisTemplate;
+
+    // Devuelve las medicaciones con stock bajo que aún no se han notificado y olvida las que ya se han reabastecido
+    public Set<Long> pendingLowStock(Set<Long> lowStockIds) {
+        Set<String> current = lowStockIds.stream().map(String::valueOf).collect(Collectors.toSet());
+        Set<String> members = redisTemplate.opsForSet().members(LOW_STOCK_KEY);
+        Set<String> notified = members != null ? members : Set.of();
+
+        Set<String> replenished = new HashSet<>(notified);
+        replenished.removeAll(current);
+        if (!replenished.isEmpty()) {
+            redisTemplate.opsForSet().remove(LOW_STOCK_KEY, replenished.toArray());
+        }
+
+        Set<Long> pending = new HashSet<>(lowStockIds);
+        pending.removeIf(id -> notified.contains(String.valueOf(id)));
+        return pending;
+    }
+
+    public void markLowStockNotified(Set<Long> medicationIds) {
+        if (medicationIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForSet().add(LOW_STOCK_KEY, medicationIds.stream().map(String::valueOf).toArray(String[]::new));
+    }
+}
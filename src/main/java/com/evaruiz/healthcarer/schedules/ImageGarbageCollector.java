@@ -0,0 +1,81 @@
+package com.evaruiz.healthcarer.schedules;
+
+import com.evaruiz.healthcarer.repository.MedicationRepository;
+import com.evaruiz.healthcarer.service.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+public class ImageGarbageCollector {
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private SchedulerLease schedulerLease;
+
+    @Value("${image.gc.batchSize}")
+    private int batchSize;
+
+    @Value("${image.gc.pauseMs}")
+    private long pauseMs;
+
+    @Value("${image.gc.graceMinutes}")
+    private long graceMinutes;
+
+    private static final Duration LEASE_TIME = Duration.ofMinutes(55);
+
+    @Scheduled(fixedRate = 3600000, initialDelay = 300000) // 1 hour
+    public void collectOrphanedImages() {
+        if (!schedulerLease.tryAcquire("collectOrphanedImages", LEASE_TIME)) {
+            return;
+        }
+        try {
+            Set<String> referenced = medicationRepository.findReferencedImagePaths();
+            List<String> orphaned = imageService.findOrphanedObjects(referenced,
+                    ZonedDateTime.now().minusMinutes(graceMinutes));
+
+            // Se borra en lotes con una pausa entre ellos para no competir con las peticiones de los usuarios
+            for (int from = 0; from < orphaned.size(); from += batchSize) {
+                if (from > 0) {
+                    Thread.sleep(pauseMs);
+                }
+                imageService.deleteObjects(stillOrphaned(orphaned.subList(from, Math.min(from + batchSize, orphaned.size()))));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Error al borrar las imágenes huérfanas de MinIO: " + e.getMessage());
+        }
+    }
+
+    // Las referencias se leen al empezar y el borrado dura varios lotes: justo antes de borrar cada lote se
+    // vuelve a consultar qué imágenes han pasado a usarse mientras tanto
+    private List<String> stillOrphaned(List<String> batch) {
+        Set<String> imageNames = batch.stream()
+                .map(ImageService::imageNameOf)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> referenced = imageNames.isEmpty()
+                ? Set.of()
+                : medicationRepository.findReferencedImagePathsIn(imageNames);
+        return batch.stream()
+                .filter(objectName -> {
+                    String imageName = ImageService.imageNameOf(objectName);
+                    return imageName == null || !referenced.contains(imageName);
+                })
+                .toList();
+    }
+}
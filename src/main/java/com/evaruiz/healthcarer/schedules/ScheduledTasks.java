@@ -1,4 +1,5 @@
 package com.evaruiz.healthcarer.schedules;
+import com.evaruiz.healthcarer.model.DTO.LowStockAlert;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TakeDB;
 import com.evaruiz.healthcarer.model.TreatmentDB;
@@ -13,10 +14,15 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @Component
@@ -35,29 +41,41 @@ public class ScheduledTasks {
     @Autowired
     private EmailServiceImpl emailService;
 
+    @Autowired
+    private SchedulerLease schedulerLease;
+
+    @Autowired
+    private AlertHistory alertHistory;
+
+    private static final long REMINDER_WINDOW_MINUTES = 10;
+    private static final Duration LEASE_TIME = Duration.ofSeconds(55);
+    private static final float LOW_STOCK_THRESHOLD = 5;
+
     @Scheduled(fixedRate = 60000) // 5 minutes
     @Transactional
     public void checkIntakeDates() {
-        List<TreatmentDB> treatments = treatmentRepository.findAll();
+        if (!schedulerLease.tryAcquire("checkIntakeDates", LEASE_TIME)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<TreatmentDB> treatments = treatmentRepository.findDueForIntake(now, now.plusMinutes(REMINDER_WINDOW_MINUTES));
+        Map<String, List<String>> reminders = new LinkedHashMap<>();
         for (TreatmentDB treatment : treatments) {
             boolean sendMail = treatment.checkIntakeDates();
             if (sendMail) {
-                String subject = "Hora de tomar la medicación";
+                List<String> lines = reminders.computeIfAbsent(treatment.getUser().getEmail(), email -> new ArrayList<>());
                 StringBuilder text = new StringBuilder("Debes tomar la siguiente medicacion: ");
                 for (MedicationDB medication : treatment.getMedications()) {
                     text.append(medication.getName()).append(" ");
                     text.append(medication.getDose()).append("mg ");
                 }
-                emailService.sendSimpleMessage(treatment.getUser().getEmail(), subject, text.toString());
+                lines.add(text.toString());
 
+                List<Long> outOfStock = medicationService.discountMedicationStock(
+                        treatment.getMedications().stream().map(MedicationDB::getId).toList());
                 for (MedicationDB medication : treatment.getMedications()) {
-                    try {
-                        medicationService.discountMedicationStock(medication.getId());
-
-                    } catch (IllegalStateException e) {
-                        String errorSubject = "Error al tomar la medicación";
-                        String errorText = "No hay suficiente stock para la medicación: " + medication.getName();
-                        emailService.sendSimpleMessage(treatment.getUser().getEmail(), errorSubject, errorText);
+                    if (outOfStock.contains(medication.getId())) {
+                        lines.add("No hay suficiente stock para la medicación: " + medication.getName());
                     }
                 }
 
@@ -73,21 +91,36 @@ public class ScheduledTasks {
                 treatmentRepository.save(treatment);
             }
         }
+        sendDigests("Hora de tomar la medicación", reminders);
     }
 
     @Scheduled(fixedRate = 60000) // 12 hours
-    @Transactional
+    @Transactional(readOnly = true)
     public void checkMedicationStock() {
-        List<TreatmentDB> treatments = treatmentRepository.findAll();
-        for (TreatmentDB treatment : treatments) {
-            for (MedicationDB medication : treatment.getMedications()) {
-                if (medication.getStock() <= 5) {
-                    String subject = "Stock de medicación bajo";
-                    String text = "La medicación " + medication.getName() + " está por debajo del nivel mínimo de stock. Por favor, reabastece lo antes posible.";
-                    emailService.sendSimpleMessage(treatment.getUser().getEmail(), subject, text);
-                }
+        if (!schedulerLease.tryAcquire("checkMedicationStock", LEASE_TIME)) {
+            return;
+        }
+        List<LowStockAlert> alerts = treatmentRepository.findLowStockAlerts(LOW_STOCK_THRESHOLD);
+        Set<Long> lowStockIds = alerts.stream().map(LowStockAlert::medicationId).collect(Collectors.toSet());
+        Set<Long> pending = alertHistory.pendingLowStock(lowStockIds);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<String>> lowStockByUser = new LinkedHashMap<>();
+        for (LowStockAlert alert : alerts) {
+            if (pending.contains(alert.medicationId())) {
+                lowStockByUser.computeIfAbsent(alert.email(), email -> new ArrayList<>()).add(alert.medicationName());
             }
         }
+        lowStockByUser.forEach((email, names) -> emailService.sendSimpleMessage(email, "Stock de medicación bajo",
+                "Las siguientes medicaciones están por debajo del nivel mínimo de stock: " + String.join(", ", names)
+                        + ". Por favor, reabastece lo antes posible."));
+        alertHistory.markLowStockNotified(pending);
+    }
+
+    private void sendDigests(String subject, Map<String, List<String>> linesByUser) {
+        linesByUser.forEach((email, lines) -> emailService.sendSimpleMessage(email, subject, String.join("\n", lines)));
     }
 
 }
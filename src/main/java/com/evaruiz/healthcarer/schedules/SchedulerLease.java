@@ -0,0 +1,30 @@
+package com.evaruiz.healthcarer.schedules;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class SchedulerLease {
+
+    private static final String KEY_PREFIX = "healthcarer:scheduler:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String owner = UUID.randomUUID().toString();
+
+    public boolean tryAcquire(String job, Duration leaseTime) {
+        try {
+            // El lease no se libera al terminar: caduca solo, así ninguna otra réplica repite la tarea en el mismo intervalo
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + job, owner, leaseTime);
+            return Boolean.TRUE.equals(acquired);
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo obtener el lease de la tarea " + job + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
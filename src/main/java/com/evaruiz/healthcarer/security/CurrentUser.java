@@ -0,0 +1,45 @@
+package com.evaruiz.healthcarer.security;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.model.UserDB;
+import com.evaruiz.healthcarer.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+// Usuario autenticado de la petición en curso. El id sale del principal sin consultar la base de datos,
+// getReference() sirve para asignar la FK en las altas sin ningún SELECT y get() carga el usuario
+// completo como mucho una vez por petición
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class CurrentUser {
+
+    private final UserService userService;
+
+    private UserDB user;
+
+    public Long getId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof LoggedUser loggedUser) {
+            return loggedUser.getId();
+        }
+        return null;
+    }
+
+    public UserDB getReference() {
+        if (user != null) {
+            return user;
+        }
+        return userService.getReference(getId());
+    }
+
+    public UserDB get() {
+        if (user == null) {
+            user = userService.findById(getId());
+        }
+        return user;
+    }
+}
@@ -0,0 +1,29 @@
+package com.evaruiz.healthcarer.security;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import java.io.IOException;
+
+// Si el pool de BCrypt está lleno se responde 429 en vez de volver al formulario con "credenciales incorrectas"
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private static final long OVERLOAD_RETRY_SECONDS = 5;
+
+    public LoginFailureHandler(String failureUrl) {
+        super(failureUrl);
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+                                        AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof LoginOverloadedException || exception.getCause() instanceof LoginOverloadedException) {
+            LoginThrottleFilter.tooManyRequests(response, OVERLOAD_RETRY_SECONDS, exception.getMessage());
+            return;
+        }
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
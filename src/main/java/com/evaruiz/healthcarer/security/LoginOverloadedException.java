@@ -0,0 +1,12 @@
+package com.evaruiz.healthcarer.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+public class LoginOverloadedException extends AuthenticationServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LoginOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,89 @@
+package com.evaruiz.healthcarer.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+// Cuenta los logins fallidos por IP y por cuenta en Redis, compartido entre réplicas. Cada fallo renueva la
+// caducidad, así que el contador se borra tras una ventana entera sin fallos. La IP es la del cliente que
+// resuelve server.forward-headers-strategy a partir del X-Forwarded-For de HAProxy. Si Redis no responde no
+// se bloquea a nadie
+@Component
+@RequiredArgsConstructor
+public class LoginThrottle {
+
+    private static final String IP_PREFIX = "healthcarer:login:ip:";
+    private static final String ACCOUNT_PREFIX = "healthcarer:login:account:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${security.login.maxFailuresPerIp}")
+    private long maxFailuresPerIp;
+
+    @Value("${security.login.maxFailuresPerAccount}")
+    private long maxFailuresPerAccount;
+
+    @Value("${security.login.windowSeconds}")
+    private long windowSeconds;
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public boolean isBlocked(String ip, String email) {
+        try {
+            List<String> failures = redisTemplate.opsForValue().multiGet(List.of(IP_PREFIX + ip, accountKey(email)));
+            if (failures == null) {
+                return false;
+            }
+            return exceeds(failures.get(0), maxFailuresPerIp) || exceeds(failures.get(1), maxFailuresPerAccount);
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo consultar el límite de logins: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @EventListener
+    public void onFailure(AuthenticationFailureBadCredentialsEvent event) {
+        try {
+            if (event.getAuthentication().getDetails() instanceof WebAuthenticationDetails details) {
+                increment(IP_PREFIX + details.getRemoteAddress());
+            }
+            increment(accountKey(event.getAuthentication().getName()));
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo registrar el login fallido: " + e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        try {
+            redisTemplate.delete(accountKey(event.getAuthentication().getName()));
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo reiniciar el límite de logins: " + e.getMessage());
+        }
+    }
+
+    private void increment(String key) {
+        redisTemplate.opsForValue().increment(key);
+        redisTemplate.expire(key, Duration.ofSeconds(windowSeconds));
+    }
+
+    private static boolean exceeds(String failures, long max) {
+        return failures != null && Long.parseLong(failures) >= max;
+    }
+
+    private static String accountKey(String email) {
+        return ACCOUNT_PREFIX + (email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+    }
+}
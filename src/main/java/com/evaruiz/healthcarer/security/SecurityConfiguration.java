@@ -1,25 +1,33 @@
 package com.evaruiz.healthcarer.security;
 
 import com.evaruiz.healthcarer.service.UserService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfiguration {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-    @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http, UserService userDetailsService) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, UserService userDetailsService,
+                                                   LoginThrottle loginThrottle,
+                                                   ObjectProvider<TokenService> tokenServiceProvider) throws Exception {
+        LoginFailureHandler failureHandler = new LoginFailureHandler("/login?error=true");
 
         http
                 .authorizeHttpRequests((requests) -> requests
@@ -30,7 +38,7 @@ public class SecurityConfiguration {
                 )
                 .formLogin((form) -> form
                         .loginPage("/login")
-                        .failureUrl("/login?error=true")
+                        .failureHandler(failureHandler)
                         .defaultSuccessUrl("/", true)
                         .usernameParameter("email")
                         .passwordParameter("password")
@@ -42,8 +50,34 @@ public class SecurityConfiguration {
                         .invalidateHttpSession(true)
                         .deleteCookies("JSESSIONID")
                 );
+
+        // security.auth.mode=token: el usuario viaja en un token firmado en vez de en la sesión de Redis
+        TokenService tokenService = tokenServiceProvider.getIfAvailable();
+        if (tokenService != null) {
+            failureHandler.setAllowSessionCreation(false);
+            http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+            http.securityContext(context -> context.securityContextRepository(new TokenSecurityContextRepository(tokenService)));
+            http.requestCache(cache -> cache.requestCache(new NullRequestCache()));
+            http.addFilterAfter(new TokenRefreshFilter(tokenService), SecurityContextHolderFilter.class);
+        }
+
+        http.addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class);
         http.csrf(AbstractHttpConfigurer::disable);
         http.userDetailsService(userDetailsService);
         return http.build();
     }
+
+    @Bean
+    @ConditionalOnProperty(name = "security.auth.mode", havingValue = "token")
+    public RedisMessageListenerContainer tokenRevocationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                          TokenRevocationList revocationList,
+                                                                          @Value("${spring.threads.virtual.enabled}") boolean virtualThreads) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("token-revocation-");
+        executor.setVirtualThreads(virtualThreads);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(executor);
+        container.addMessageListener(revocationList, new ChannelTopic(TokenRevocationList.CHANNEL));
+        return container;
+    }
 }
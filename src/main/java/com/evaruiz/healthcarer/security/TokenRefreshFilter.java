@@ -0,0 +1,33 @@
+package com.evaruiz.healthcarer.security;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Renueva el token cuando ha consumido la mitad de su vida, así un usuario activo no tiene que volver a
+// iniciar sesión y uno inactivo pierde el acceso al caducar el último token
+@RequiredArgsConstructor
+public class TokenRefreshFilter extends OncePerRequestFilter {
+
+    private final TokenService tokenService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof LoggedUser user
+                && request.getAttribute(TokenService.CLAIMS_ATTRIBUTE) instanceof TokenService.TokenClaims claims
+                && tokenService.needsRefresh(claims)) {
+            tokenService.writeCookie(response, tokenService.issue(user));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
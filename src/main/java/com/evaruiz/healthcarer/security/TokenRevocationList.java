@@ -0,0 +1,80 @@
+package com.evaruiz.healthcarer.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tokens revocados al cerrar sesión. Cada réplica guarda la lista en memoria para validar sin ir a Redis;
+// Redis sólo se usa al revocar (clave con caducidad + aviso por pub/sub) y al arrancar para cargar la lista
+@Component
+@ConditionalOnProperty(name = "security.auth.mode", havingValue = "token")
+@RequiredArgsConstructor
+public class TokenRevocationList implements MessageListener {
+
+    public static final String CHANNEL = "healthcarer:token:revoke";
+    private static final String KEY_PREFIX = "healthcarer:token:revoked:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    // jti -> caducidad del token en segundos; pasada la caducidad el token ya no es válido de todas formas
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(500).build())) {
+            keys.forEachRemaining(key -> {
+                String expiresAt = redisTemplate.opsForValue().get(key);
+                if (expiresAt != null) {
+                    revoked.put(key.substring(KEY_PREFIX.length()), Long.parseLong(expiresAt));
+                }
+            });
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo cargar la lista de tokens revocados: " + e.getMessage());
+        }
+    }
+
+    public boolean isRevoked(String jti) {
+        return revoked.containsKey(jti);
+    }
+
+    public void revoke(String jti, long expiresAt) {
+        revoked.put(jti, expiresAt);
+        long ttl = expiresAt - System.currentTimeMillis() / 1000;
+        if (ttl <= 0) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + jti, String.valueOf(expiresAt), Duration.ofSeconds(ttl));
+            redisTemplate.convertAndSend(CHANNEL, jti + "|" + expiresAt);
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo publicar la revocación del token " + jti + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length == 2) {
+            revoked.put(parts[0], Long.valueOf(parts[1]));
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis() / 1000;
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+}
@@ -0,0 +1,87 @@
+package com.evaruiz.healthcarer.security;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.DeferredSecurityContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import java.util.function.Supplier;
+
+// Sustituye a la sesión HTTP en el modo security.auth.mode=token: el SecurityContext se reconstruye a partir
+// del token de la cookie, el login guarda un token nuevo y el logout lo revoca y borra la cookie
+@RequiredArgsConstructor
+public class TokenSecurityContextRepository implements SecurityContextRepository {
+
+    private final TokenService tokenService;
+
+    @Override
+    public DeferredSecurityContext loadDeferredContext(HttpServletRequest request) {
+        Supplier<SecurityContext> supplier = () -> load(request);
+        return new DeferredSecurityContext() {
+            private SecurityContext context;
+
+            @Override
+            public SecurityContext get() {
+                if (context == null) {
+                    context = supplier.get();
+                }
+                return context;
+            }
+
+            @Override
+            public boolean isGenerated() {
+                return get().getAuthentication() == null;
+            }
+        };
+    }
+
+    @Override
+    @Deprecated
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        return load(requestResponseHolder.getRequest());
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        Authentication authentication = context.getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && authentication.getPrincipal() instanceof LoggedUser user) {
+            tokenService.writeCookie(response, tokenService.issue(user));
+            return;
+        }
+        // Contexto vacío: logout
+        TokenService.TokenClaims claims = claimsOf(request);
+        if (claims != null) {
+            tokenService.revoke(claims);
+        }
+        tokenService.clearCookie(response);
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return claimsOf(request) != null;
+    }
+
+    private SecurityContext load(HttpServletRequest request) {
+        TokenService.TokenClaims claims = claimsOf(request);
+        if (claims == null) {
+            return SecurityContextHolder.createEmptyContext();
+        }
+        request.setAttribute(TokenService.CLAIMS_ATTRIBUTE, claims);
+        LoggedUser user = claims.toLoggedUser();
+        return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+    }
+
+    private TokenService.TokenClaims claimsOf(HttpServletRequest request) {
+        String token = tokenService.readCookie(request);
+        return token != null ? tokenService.verify(token) : null;
+    }
+}
@@ -0,0 +1,178 @@
+package com.evaruiz.healthcarer.security;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Tokens JWT firmados con HMAC-SHA256 que llevan los datos del LoggedUser, así cualquier réplica valida la
+// petición sin ir a Redis. La primera clave de security.token.secrets firma y todas verifican: para rotar la
+// clave se añade la nueva delante y se quita la antigua cuando hayan caducado los tokens firmados con ella
+@Component
+@ConditionalOnProperty(name = "security.auth.mode", havingValue = "token")
+@RequiredArgsConstructor
+public class TokenService {
+
+    public static final String COOKIE_NAME = "HC_TOKEN";
+    static final String CLAIMS_ATTRIBUTE = TokenService.class.getName() + ".claims";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ObjectMapper objectMapper;
+    private final TokenRevocationList revocationList;
+
+    @Value("${security.token.secrets}")
+    private String secrets;
+
+    @Value("${security.token.ttlSeconds}")
+    private long ttlSeconds;
+
+    @Value("${server.servlet.session.cookie.secure}")
+    private boolean secureCookie;
+
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+    private String signingKeyId;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        for (String secret : secrets.split(",")) {
+            if (secret.isBlank()) {
+                continue;
+            }
+            byte[] keyBytes = secret.trim().getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length < 32) {
+                throw new IllegalStateException("Las claves de security.token.secrets deben tener al menos 32 bytes");
+            }
+            // El kid se deriva de la clave para que sea el mismo en todas las réplicas
+            String keyId = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(keyBytes), 0, 8);
+            keys.put(keyId, new SecretKeySpec(keyBytes, ALGORITHM));
+            if (signingKeyId == null) {
+                signingKeyId = keyId;
+            }
+        }
+        if (signingKeyId == null) {
+            throw new IllegalStateException("security.auth.mode=token necesita al menos una clave en security.token.secrets");
+        }
+    }
+
+    public String issue(LoggedUser user) {
+        long now = System.currentTimeMillis() / 1000;
+        TokenClaims claims = new TokenClaims(user.getUsername(), user.getId(), user.getRole(), user.getName(),
+                now, now + ttlSeconds, UUID.randomUUID().toString());
+        try {
+            String header = encodeJson(Map.of("alg", "HS256", "typ", "JWT", "kid", signingKeyId));
+            String unsigned = header + "." + encodeJson(claims);
+            return unsigned + "." + ENCODER.encodeToString(sign(keys.get(signingKeyId), unsigned));
+        } catch (JsonProcessingException | GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo generar el token de sesión", e);
+        }
+    }
+
+    // Devuelve null si el token está mal formado, la firma no es válida, ha caducado o se ha revocado
+    public TokenClaims verify(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            Map<?, ?> header = objectMapper.readValue(DECODER.decode(parts[0]), Map.class);
+            SecretKeySpec key = keys.get(String.valueOf(header.get("kid")));
+            if (key == null || !"HS256".equals(header.get("alg"))) {
+                return null;
+            }
+            byte[] expected = sign(key, parts[0] + "." + parts[1]);
+            if (!MessageDigest.isEqual(expected, DECODER.decode(parts[2]))) {
+                return null;
+            }
+            TokenClaims claims = objectMapper.readValue(DECODER.decode(parts[1]), TokenClaims.class);
+            if (claims.exp() <= System.currentTimeMillis() / 1000 || revocationList.isRevoked(claims.jti())) {
+                return null;
+            }
+            return claims;
+        } catch (IllegalArgumentException | IOException | GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    // Pasada la mitad de la vida del token se emite otro; el anterior sigue siendo válido hasta que caduque
+    public boolean needsRefresh(TokenClaims claims) {
+        return claims.exp() - System.currentTimeMillis() / 1000 < ttlSeconds / 2;
+    }
+
+    public void revoke(TokenClaims claims) {
+        revocationList.revoke(claims.jti(), claims.exp());
+    }
+
+    public String readCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        return Arrays.stream(cookies)
+                .filter(cookie -> COOKIE_NAME.equals(cookie.getName()))
+                .map(Cookie::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    public void writeCookie(HttpServletResponse response, String token) {
+        addCookie(response, token, Duration.ofSeconds(ttlSeconds));
+    }
+
+    public void clearCookie(HttpServletResponse response) {
+        addCookie(response, "", Duration.ZERO);
+    }
+
+    private void addCookie(HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, value)
+                .httpOnly(true)
+                .secure(secureCookie)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private String encodeJson(Object value) throws JsonProcessingException {
+        return ENCODER.encodeToString(objectMapper.writeValueAsBytes(value));
+    }
+
+    private static byte[] sign(SecretKeySpec key, String content) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(key);
+        return mac.doFinal(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public record TokenClaims(String sub, Long uid, String role, String name, long iat, long exp, String jti) {
+
+        public LoggedUser toLoggedUser() {
+            return new LoggedUser(uid, sub, role, name);
+        }
+    }
+}
@@ -127,5 +127,9 @@ public class DatabaseInitializer{
 
 
         }
+        for (TreatmentDB treatment : treatmentRepository.findUnscheduled()) {
+            treatment.scheduleNextIntake();
+            treatmentRepository.save(treatment);
+        }
     }
 }
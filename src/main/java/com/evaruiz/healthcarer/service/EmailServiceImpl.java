@@ -1,25 +1,189 @@
 package com.evaruiz.healthcarer.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 @Component
 public class EmailServiceImpl {
 
+    private static final Logger log = LoggerFactory.getLogger(EmailServiceImpl.class);
+    private static final String FROM = "noreply.healthcarer@gmail.com";
+
     @Autowired
     private JavaMailSender emailSender;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.outbox.capacity}")
+    private int capacity;
+
+    @Value("${mail.outbox.workers}")
+    private int workers;
+
+    @Value("${mail.outbox.batch-size}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-backoff-ms}")
+    private long retryBackoffMs;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    private final DelayQueue<OutboundMail> outbox = new DelayQueue<>();
+    // DelayQueue no tiene límite: cada mensaje en la cola ocupa un permiso, que se reserva antes de encolarlo
+    // y el worker devuelve al sacarlo, así la capacidad se respeta aunque envíen varios hilos a la vez
+    private Semaphore outboxSlots;
+    private ExecutorService workerPool;
+    private Counter sentCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        outboxSlots = new Semaphore(capacity);
+        Gauge.builder("mail.outbox.size", outbox, DelayQueue::size).register(meterRegistry);
+        sentCounter = meterRegistry.counter("mail.outbox.sent");
+        failedCounter = meterRegistry.counter("mail.outbox.failed");
+        rejectedCounter = meterRegistry.counter("mail.outbox.rejected");
+
+        // Los workers pasan casi todo el tiempo esperando a la cola o al servidor SMTP
+        workerPool = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mail-worker-", 0).factory())
+                : Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::drainOutbox);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
     public void sendSimpleMessage(String to, String subject, String text) {
 
         SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom("noreply.healthcarer@gmail.com");
+        message.setFrom(FROM);
         message.setTo(to);
         message.setSubject(subject);
         message.setText(text);
-        emailSender.send(message);
+        if (!outboxSlots.tryAcquire()) {
+            rejectedCounter.increment();
+            log.warn("Cola de correo llena, se descarta el mensaje para {}", to);
+            return;
+        }
+        outbox.put(new OutboundMail(message, 0, System.currentTimeMillis()));
 
     }
-}
 
+    private void drainOutbox() {
+        List<OutboundMail> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(outbox.take());
+                outbox.drainTo(batch, batchSize - 1);
+                outboxSlots.release(batch.size());
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Un fallo inesperado no puede parar el worker: la cola seguiría llenándose sin que salga ningún correo
+                log.error("Error inesperado en el envío de correo, se descarta el lote", e);
+                failedCounter.increment(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Un único send con varios mensajes reutiliza la misma conexión SMTP para todo el lote
+    private void sendBatch(List<OutboundMail> batch) {
+        SimpleMailMessage[] messages = batch.stream()
+                .map(OutboundMail::message)
+                .toArray(SimpleMailMessage[]::new);
+        try {
+            emailSender.send(messages);
+            sentCounter.increment(batch.size());
+        } catch (MailSendException e) {
+            Set<Object> failedMessages = e.getFailedMessages().keySet();
+            for (OutboundMail mail : batch) {
+                if (failedMessages.isEmpty() || failedMessages.contains(mail.message())) {
+                    retry(mail);
+                } else {
+                    sentCounter.increment();
+                }
+            }
+        } catch (MailException e) {
+            batch.forEach(this::retry);
+        } catch (RuntimeException e) {
+            // Destinatario nulo, error de codificación...: no es un fallo transitorio del servidor. Se envía
+            // cada mensaje por separado para que uno defectuoso no arrastre al resto del lote, y ese se descarta
+            if (batch.size() > 1) {
+                batch.forEach(mail -> sendBatch(List.of(mail)));
+                return;
+            }
+            failedCounter.increment();
+            log.error("Se descarta el correo a {}", recipients(batch.get(0)), e);
+        }
+    }
+
+    private static String recipients(OutboundMail mail) {
+        String[] to = mail.message().getTo();
+        return to != null ? String.join(",", to) : "(sin destinatario)";
+    }
+
+    // Un reintento vuelve a la cola y necesita su propio permiso: con la cola llena se descarta
+    private void retry(OutboundMail mail) {
+        if (mail.attempt() + 1 >= maxAttempts) {
+            failedCounter.increment();
+            log.error("No se pudo enviar el correo a {} tras {} intentos", recipients(mail), maxAttempts);
+            return;
+        }
+        if (!outboxSlots.tryAcquire()) {
+            failedCounter.increment();
+            log.error("Cola de correo llena, no se reintenta el correo a {}", recipients(mail));
+            return;
+        }
+        long backoff = retryBackoffMs << mail.attempt();
+        outbox.put(new OutboundMail(mail.message(), mail.attempt() + 1, System.currentTimeMillis() + backoff));
+    }
+
+    private record OutboundMail(SimpleMailMessage message, int attempt, long availableAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(availableAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.evaruiz.healthcarer.service;
+
+import com.evaruiz.healthcarer.model.DTO.ImageMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Caché LRU en disco local de los objetos de MinIO. Los nombres de objeto no se reescriben nunca,
+// así que una entrada no caduca: sólo sale de la caché por falta de espacio o al borrar la imagen.
+// El índice se protege con un ReentrantLock en vez de synchronized para no bloquear el hilo portador
+// cuando se atienden peticiones con hilos virtuales
+@Component
+public class ImageCache {
+
+    private static final long EVICTION_GRACE_MS = 30000;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${image.cache.directory}")
+    private String directory;
+
+    @Value("${image.cache.maxBytes}")
+    private long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Path>> loading = new ConcurrentHashMap<>();
+    private final Queue<EvictedFile> evicted = new ConcurrentLinkedQueue<>();
+    private long usedBytes;
+    private Path root;
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        hitCounter = meterRegistry.counter("image.cache.hits");
+        missCounter = meterRegistry.counter("image.cache.misses");
+        Gauge.builder("image.cache.bytes", this, ImageCache::getUsedBytes).register(meterRegistry);
+        if (maxBytes <= 0) {
+            return;
+        }
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+        // Los ficheros de una ejecución anterior no están en el índice en memoria
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(ImageCache::deleteQuietly);
+        }
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ImageMetadata getMetadata(String objectName) {
+        lock.lock();
+        try {
+            CachedImage cached = entries.get(objectName);
+            return cached != null ? cached.metadata() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Devuelve el fichero local del objeto, descargándolo si hace falta. Varias peticiones simultáneas del
+    // mismo objeto esperan a una única descarga. Devuelve null si la caché está desactivada o el objeto
+    // es demasiado grande para guardarlo
+    public Path getFile(ImageMetadata metadata, Callable<InputStream> loader) throws Exception {
+        if (root == null || metadata.size() > maxBytes / 4) {
+            return null;
+        }
+        Path cached = lookup(metadata.objectName());
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+
+        CompletableFuture<Path> download = new CompletableFuture<>();
+        CompletableFuture<Path> inProgress = loading.putIfAbsent(metadata.objectName(), download);
+        if (inProgress != null) {
+            hitCounter.increment();
+            try {
+                return inProgress.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        missCounter.increment();
+        try {
+            Path path = lookup(metadata.objectName());
+            if (path == null) {
+                path = download(metadata, loader);
+            }
+            download.complete(path);
+            return path;
+        } catch (Exception e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(metadata.objectName(), download);
+        }
+    }
+
+    public void invalidate(String objectName) {
+        lock.lock();
+        try {
+            CachedImage removed = entries.remove(objectName);
+            if (removed != null) {
+                usedBytes -= removed.metadata().size();
+                evicted.add(new EvictedFile(removed.path(), System.currentTimeMillis()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Los ficheros expulsados se borran con retraso por si una respuesta en curso todavía los está enviando
+    @Scheduled(fixedRate = 60000)
+    public void purgeEvicted() {
+        long limit = System.currentTimeMillis() - EVICTION_GRACE_MS;
+        while (!evicted.isEmpty() && evicted.peek().evictedAt() <= limit) {
+            deleteQuietly(evicted.poll().path());
+        }
+    }
+
+    private Path lookup(String objectName) {
+        lock.lock();
+        try {
+            CachedImage cached = entries.get(objectName);
+            return cached != null ? cached.path() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path download(ImageMetadata metadata, Callable<InputStream> loader) throws Exception {
+        Path temporary = Files.createTempFile(root, "download-", ".tmp");
+        try (InputStream in = loader.call()) {
+            Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Path path = root.resolve(UUID.randomUUID().toString());
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            store(metadata, path);
+            return path;
+        } catch (Exception e) {
+            deleteQuietly(temporary);
+            throw e;
+        }
+    }
+
+    private void store(ImageMetadata metadata, Path path) {
+        lock.lock();
+        try {
+            entries.put(metadata.objectName(), new CachedImage(metadata, path));
+            usedBytes += metadata.size();
+            Iterator<CachedImage> eldest = entries.values().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                CachedImage removed = eldest.next();
+                eldest.remove();
+                usedBytes -= removed.metadata().size();
+                evicted.add(new EvictedFile(removed.path(), System.currentTimeMillis()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("No se pudo borrar el fichero de la caché de imágenes " + path + ": " + e.getMessage());
+        }
+    }
+
+    private record CachedImage(ImageMetadata metadata, Path path) {
+    }
+
+    private record EvictedFile(Path path, long evictedAt) {
+    }
+}
@@ -1,27 +1,145 @@
 package com.evaruiz.healthcarer.service;
 
+import com.evaruiz.healthcarer.model.DTO.ImageMetadata;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ImageService {
 
+    private static final String DERIVATIVE_CONTENT_TYPE = "image/jpeg";
+    private static final int MAX_DERIVATIVE_SIDE = Arrays.stream(ImageSize.values()).mapToInt(ImageSize::getMaxSide).max().orElse(0);
+    private static final float DERIVATIVE_QUALITY = 0.8f;
+    private static final int PRESIGNED_URL_CACHE_SIZE = 10000;
+    private static final int UNDECODABLE_CACHE_SIZE = 10000;
+    private static final String UPLOADS_PREFIX = "uploads/";
+    private static final String DERIVATIVES_PREFIX = "derivatives/";
+    private static final String UNDECODABLE_PREFIX = DERIVATIVES_PREFIX + "undecodable/";
+
     @Autowired
     private MinioClient minioClient;
 
+    @Autowired
+    private ImageCache imageCache;
+
+    @Autowired
+    @Qualifier("presignMinioClient")
+    private MinioClient presignMinioClient;
+
     @Value("${minio.bucketName}")
     private String bucketName;
 
+    @Value("${minio.presignedUrls}")
+    private boolean presignedUrls;
+
+    @Value("${minio.presignedExpirySeconds}")
+    private int presignedExpirySeconds;
+
+    @Value("${minio.upload.partSize}")
+    private int partSize;
+
+    @Value("${minio.upload.parallelism}")
+    private int uploadParallelism;
+
+    @Value("${minio.upload.maxBytes}")
+    private long maxUploadBytes;
+
+    @Value("${image.maxPixels}")
+    private long maxImagePixels;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    // Cada URL caduca de la caché cuando deja de merecer la pena reutilizarla; maximumSize acota la memoria
+    // aunque haya muchas más imágenes distintas con URL vigente
+    private final Cache<String, PresignedUrl> presignedUrlCache = Caffeine.newBuilder()
+            .maximumSize(PRESIGNED_URL_CACHE_SIZE)
+            .expireAfter(new Expiry<String, PresignedUrl>() {
+                @Override
+                public long expireAfterCreate(String objectName, PresignedUrl presigned, long currentTime) {
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(0, presigned.reuseUntil() - System.currentTimeMillis()));
+                }
+
+                @Override
+                public long expireAfterUpdate(String objectName, PresignedUrl presigned, long currentTime, long currentDuration) {
+                    return expireAfterCreate(objectName, presigned, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String objectName, PresignedUrl presigned, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    // Imágenes que ImageIO no sabe leer (HEIC, WebP...). En MinIO queda un marcador vacío bajo
+    // derivatives/undecodable/ para las demás réplicas; esta caché evita incluso consultarlo
+    private final Cache<String, Boolean> undecodableImages = Caffeine.newBuilder()
+            .maximumSize(UNDECODABLE_CACHE_SIZE)
+            .build();
+    // Generaciones de derivadas en curso para imágenes antiguas, por nombre de imagen
+    private final Map<String, CompletableFuture<Boolean>> generatingDerivatives = new ConcurrentHashMap<>();
+    private ExecutorService uploadExecutor;
+    private Semaphore uploadPermits;
+
+    // El bucket se comprueba una sola vez al arrancar, no en cada subida
     @PostConstruct
     public void init() {
+        // Con hilos virtuales cada parte tiene su propio hilo; uploadPermits sigue limitando las subidas simultáneas
+        uploadExecutor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(uploadParallelism);
+        uploadPermits = new Semaphore(uploadParallelism);
         try {
             boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
             if (!found) {
@@ -32,46 +150,222 @@ public class ImageService {
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    // El nombre del objeto es el SHA-256 del contenido: la misma foto subida por varios usuarios
+    // se guarda una sola vez y una subida repetida sólo cuesta un statObject
     public String uploadImage(MultipartFile imageFile) throws Exception {
-        // Asegurar que el bucket existe
-        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-        if (!found) {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+        if (imageFile.getSize() > maxUploadBytes) {
+            throw new IllegalArgumentException("La imagen supera el tamaño máximo permitido");
+        }
+        if (imageFile.getSize() <= partSize) {
+            return uploadSinglePart(imageFile);
         }
+        return uploadMultipart(imageFile);
+    }
 
-        String originalFileName = imageFile.getOriginalFilename();
-        String fileExtension = "";
-        int dotIndex = originalFileName != null ? originalFileName.lastIndexOf('.') : -1;
-        if (dotIndex > 0 && dotIndex < originalFileName.length() - 1) {
-            fileExtension = originalFileName.substring(dotIndex);
+    private String uploadSinglePart(MultipartFile imageFile) throws Exception {
+        byte[] content;
+        try (InputStream in = imageFile.getInputStream()) {
+            content = in.readAllBytes();
+        }
+        String fileName = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        StatObjectResponse existing = statObject(fileName);
+        if (existing != null) {
+            touchObject(fileName, existing);
+            return fileName;
         }
+        // Se decodifica antes de guardar nada para rechazar las imágenes con demasiados píxeles. Las versiones
+        // reducidas se generan al subir la imagen; si el formato no se puede decodificar se sirve siempre la original
+        BufferedImage image = readImage(new ByteArrayInputStream(content));
+        putObject(fileName, content, imageFile.getContentType());
+        createDerivatives(fileName, image);
+        return fileName;
+    }
+
+    // Las imágenes grandes se leen una sola vez por partes de partSize bytes: cada parte se resume en el hash
+    // y se sube como objeto temporal en paralelo, y al final MinIO las concatena en el servidor con
+    // composeObject. Como mucho hay uploadParallelism partes en memoria a la vez entre todas las subidas. Las
+    // derivadas se leen del fichero de la subida con readImage, que tampoco decodifica la imagen completa
+    private String uploadMultipart(MultipartFile imageFile) throws Exception {
+        String prefix = UPLOADS_PREFIX + UUID.randomUUID() + "/";
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        List<String> partNames = new ArrayList<>();
+        List<CompletableFuture<Void>> partUploads = new ArrayList<>();
+        try {
+            long total = 0;
+            try (InputStream in = imageFile.getInputStream()) {
+                while (true) {
+                    uploadPermits.acquire();
+                    byte[] part;
+                    try {
+                        part = in.readNBytes(partSize);
+                    } catch (IOException e) {
+                        uploadPermits.release();
+                        throw e;
+                    }
+                    if (part.length == 0) {
+                        uploadPermits.release();
+                        break;
+                    }
+                    total += part.length;
+                    if (total > maxUploadBytes) {
+                        uploadPermits.release();
+                        throw new IllegalArgumentException("La imagen supera el tamaño máximo permitido");
+                    }
+                    digest.update(part);
+                    String partName = prefix + "part-" + partNames.size();
+                    partNames.add(partName);
+                    partUploads.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            putObject(partName, part, null);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        } finally {
+                            uploadPermits.release();
+                        }
+                    }, uploadExecutor));
+                }
+            }
+            try {
+                CompletableFuture.allOf(partUploads.toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
 
-        String fileName = UUID.randomUUID() + fileExtension;
+            String fileName = HexFormat.of().formatHex(digest.digest());
+            StatObjectResponse existing = statObject(fileName);
+            if (existing != null) {
+                touchObject(fileName, existing);
+            } else {
+                BufferedImage image;
+                try (InputStream original = imageFile.getInputStream()) {
+                    image = readImage(original);
+                }
+                minioClient.composeObject(
+                        ComposeObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(fileName)
+                                .sources(partNames.stream()
+                                        .map(partName -> ComposeSource.builder().bucket(bucketName).object(partName).build())
+                                        .toList())
+                                .headers(imageFile.getContentType() != null
+                                        ? Map.of("Content-Type", imageFile.getContentType())
+                                        : Map.of())
+                                .build()
+                );
+                createDerivatives(fileName, image);
+            }
+            return fileName;
+        } finally {
+            CompletableFuture.allOf(partUploads.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+            deleteObjects(partNames);
+        }
+    }
 
-        // Subir a MinIO
-        minioClient.putObject(
-                PutObjectArgs.builder()
+    // Una subida repetida copia el objeto sobre sí mismo reemplazando los metadatos para que su fecha de
+    // modificación avance: si era un huérfano antiguo, ImageGarbageCollector vuelve a respetar el periodo de gracia
+    // hasta que se guarde la medicación que lo usa
+    private void touchObject(String objectName, StatObjectResponse stat) throws Exception {
+        minioClient.copyObject(
+                CopyObjectArgs.builder()
                         .bucket(bucketName)
-                        .object(fileName)
-                        .stream(imageFile.getInputStream(), imageFile.getSize(), -1)
-                        .contentType(imageFile.getContentType())
+                        .object(objectName)
+                        .source(CopySource.builder().bucket(bucketName).object(objectName).build())
+                        .metadataDirective(Directive.REPLACE)
+                        .headers(stat.contentType() != null
+                                ? Map.of("Content-Type", stat.contentType())
+                                : Map.of())
                         .build()
         );
+        imageCache.invalidate(objectName);
+    }
 
-        return fileName;
+    private void putObject(String objectName, byte[] content, String contentType) throws Exception {
+        PutObjectArgs.Builder args = PutObjectArgs.builder()
+                .bucket(bucketName)
+                .object(objectName)
+                .stream(new ByteArrayInputStream(content), content.length, -1);
+        if (contentType != null) {
+            args.contentType(contentType);
+        }
+        minioClient.putObject(args.build());
     }
 
-    public void deleteImageFile(String fileName) throws Exception {
-        if (fileName == null || fileName.isEmpty()) {
-            return;
+    // Objetos del bucket que ya no pertenecen a ninguna imagen referenciada: originales sin medicación,
+    // sus versiones reducidas y partes de subidas que no llegaron a terminar. Sólo se tienen en cuenta los
+    // modificados antes de modifiedBefore, para no tocar subidas cuya medicación aún no se ha guardado. Las
+    // versiones reducidas siguen la fecha de su original, que es la que renueva una subida repetida
+    public List<String> findOrphanedObjects(Set<String> referencedImages, ZonedDateTime modifiedBefore) throws Exception {
+        List<String> candidates = new ArrayList<>();
+        Set<String> recentImages = new HashSet<>();
+        Iterable<Result<Item>> objects = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .recursive(true)
+                        .build()
+        );
+        for (Result<Item> result : objects) {
+            Item item = result.get();
+            if (item.isDir()) {
+                continue;
+            }
+            String imageName = imageNameOf(item.objectName());
+            if (!item.lastModified().isBefore(modifiedBefore)) {
+                if (imageName != null) {
+                    recentImages.add(imageName);
+                }
+                continue;
+            }
+            if (imageName == null || !referencedImages.contains(imageName)) {
+                candidates.add(item.objectName());
+            }
         }
+        List<String> orphaned = new ArrayList<>();
+        for (String objectName : candidates) {
+            String imageName = imageNameOf(objectName);
+            if (imageName == null || !recentImages.contains(imageName)) {
+                orphaned.add(objectName);
+            }
+        }
+        return orphaned;
+    }
 
-        minioClient.removeObject(
-                RemoveObjectArgs.builder()
+    public void deleteObjects(List<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return;
+        }
+        objectNames.forEach(imageCache::invalidate);
+        Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                RemoveObjectsArgs.builder()
                         .bucket(bucketName)
-                        .object(fileName)
+                        .objects(objectNames.stream().map(DeleteObject::new).toList())
                         .build()
         );
+        // removeObjects es perezoso: los borrados se envían al recorrer los resultados
+        for (Result<DeleteError> result : results) {
+            try {
+                DeleteError error = result.get();
+                System.err.println("No se pudo borrar el objeto " + error.objectName() + " de MinIO: " + error.message());
+            } catch (Exception e) {
+                System.err.println("Error al borrar objetos de MinIO: " + e.getMessage());
+            }
+        }
+    }
+
+    // Nombre de la imagen original a la que pertenece un objeto, o null para las partes temporales de subida
+    public static String imageNameOf(String objectName) {
+        if (objectName.startsWith(UPLOADS_PREFIX)) {
+            return null;
+        }
+        if (objectName.startsWith(DERIVATIVES_PREFIX)) {
+            String derivative = objectName.substring(objectName.indexOf('/', DERIVATIVES_PREFIX.length()) + 1);
+            return derivative.endsWith(".jpg") ? derivative.substring(0, derivative.length() - ".jpg".length()) : derivative;
+        }
+        return objectName;
     }
 
     // En lugar de devolver un recurso de sistema de archivos,
@@ -84,4 +378,235 @@ public class ImageService {
                         .build()
         );
     }
+
+    public InputStream getImageFile(String objectName, long offset, long length) throws Exception {
+        return minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .offset(offset)
+                        .length(length)
+                        .build()
+        );
+    }
+
+    // Metadatos del objeto a servir para el tamaño pedido, sin descargar su contenido. Las imágenes subidas
+    // antes de existir las derivadas se procesan la primera vez que se solicitan. Devuelve null si no existe
+    public ImageMetadata getImageMetadata(String fileName, ImageSize size) throws Exception {
+        if (size != ImageSize.ORIGINAL && undecodableImages.getIfPresent(fileName) == null) {
+            String derivative = derivativeName(fileName, size);
+            ImageMetadata cached = imageCache.getMetadata(derivative);
+            if (cached != null) {
+                return cached;
+            }
+            StatObjectResponse stat = statObject(derivative);
+            if (stat == null && !isUndecodable(fileName) && generateDerivatives(fileName, derivative)) {
+                stat = statObject(derivative);
+            }
+            if (stat != null) {
+                return toMetadata(derivative, stat);
+            }
+        }
+        ImageMetadata cached = imageCache.getMetadata(fileName);
+        if (cached != null) {
+            return cached;
+        }
+        StatObjectResponse stat = statObject(fileName);
+        return stat != null ? toMetadata(fileName, stat) : null;
+    }
+
+    // Copia local del objeto para servirla sin pasar por MinIO; null si no se puede cachear
+    public Path getCachedImageFile(ImageMetadata image) throws Exception {
+        return imageCache.getFile(image, () -> getImageFile(image.objectName()));
+    }
+
+    public boolean isPresignedUrls() {
+        return presignedUrls;
+    }
+
+    public int getPresignedExpirySeconds() {
+        return presignedExpirySeconds;
+    }
+
+    // La misma URL firmada se reutiliza mientras le quede al menos la mitad de su validez,
+    // así el navegador puede cachear la redirección y no se firma en cada petición. Se guarda por imagen y
+    // tamaño pedidos: como los nombres son el hash del contenido, el objeto resuelto no cambia y una URL en
+    // caché se devuelve sin consultar MinIO. Devuelve null si la imagen no existe
+    public String getPresignedUrl(String fileName, ImageSize size) throws Exception {
+        long now = System.currentTimeMillis();
+        String key = size.getParam() + "/" + fileName;
+        PresignedUrl cached = presignedUrlCache.getIfPresent(key);
+        if (cached != null) {
+            return cached.url();
+        }
+        ImageMetadata image = getImageMetadata(fileName, size);
+        if (image == null) {
+            return null;
+        }
+        String url = presignMinioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.GET)
+                        .bucket(bucketName)
+                        .object(image.objectName())
+                        .expiry(presignedExpirySeconds)
+                        .build()
+        );
+        presignedUrlCache.put(key, new PresignedUrl(url, now + presignedExpirySeconds * 500L));
+        return url;
+    }
+
+    private StatObjectResponse statObject(String objectName) throws Exception {
+        try {
+            return minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()
+            );
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static ImageMetadata toMetadata(String objectName, StatObjectResponse stat) {
+        return new ImageMetadata(objectName, stat.etag(), stat.lastModified(), stat.size(), stat.contentType());
+    }
+
+    // Varias peticiones simultáneas de la misma imagen antigua esperan a una única generación, igual que las
+    // descargas de ImageCache, en vez de descargar y decodificar el original cada una
+    private boolean generateDerivatives(String fileName, String derivative) throws Exception {
+        CompletableFuture<Boolean> generation = new CompletableFuture<>();
+        CompletableFuture<Boolean> inProgress = generatingDerivatives.putIfAbsent(fileName, generation);
+        if (inProgress != null) {
+            try {
+                return inProgress.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            // Otra petición puede haber terminado la generación justo antes de registrar la nuestra
+            boolean created = statObject(derivative) != null || createDerivatives(fileName);
+            generation.complete(created);
+            return created;
+        } catch (Exception e) {
+            generation.completeExceptionally(e);
+            throw e;
+        } finally {
+            generatingDerivatives.remove(fileName, generation);
+        }
+    }
+
+    private boolean createDerivatives(String fileName) throws Exception {
+        if (statObject(fileName) == null) {
+            return false;
+        }
+        BufferedImage image;
+        try (InputStream original = getImageFile(fileName)) {
+            image = readImage(original);
+        } catch (IllegalArgumentException e) {
+            // Una imagen antigua con demasiados píxeles se marca como no decodificable y se sirve la original
+            image = null;
+        }
+        createDerivatives(fileName, image);
+        return image != null;
+    }
+
+    private void createDerivatives(String fileName, BufferedImage image) throws Exception {
+        if (image == null) {
+            // Sin marcador, cada petición de una versión reducida volvería a descargar y decodificar el original
+            putObject(UNDECODABLE_PREFIX + fileName, new byte[0], null);
+            undecodableImages.put(fileName, Boolean.TRUE);
+            return;
+        }
+        for (ImageSize size : ImageSize.values()) {
+            if (size == ImageSize.ORIGINAL) {
+                continue;
+            }
+            putObject(derivativeName(fileName, size), encode(resize(image, size.getMaxSide())), DERIVATIVE_CONTENT_TYPE);
+        }
+    }
+
+    private boolean isUndecodable(String fileName) throws Exception {
+        if (undecodableImages.getIfPresent(fileName) != null) {
+            return true;
+        }
+        if (statObject(UNDECODABLE_PREFIX + fileName) == null) {
+            return false;
+        }
+        undecodableImages.put(fileName, Boolean.TRUE);
+        return true;
+    }
+
+    // Lee la imagen comprobando antes sus dimensiones en la cabecera: un PNG pequeño y muy comprimido puede
+    // declarar cientos de megapíxeles y ocupar gigas de memoria al decodificarlo. Sólo se usa para las derivadas,
+    // así que se decodifica submuestreada a no menos del lado de la mayor: la memoria queda acotada por ese
+    // tamaño y no por el de la imagen subida. Devuelve null si ImageIO no reconoce el formato
+    private BufferedImage readImage(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxImagePixels) {
+                    throw new IllegalArgumentException("La imagen supera el número máximo de píxeles permitido");
+                }
+                int step = Math.max(1, Math.max(width, height) / MAX_DERIVATIVE_SIDE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static String derivativeName(String fileName, ImageSize size) {
+        return DERIVATIVES_PREFIX + size.getParam() + "/" + fileName + ".jpg";
+    }
+
+    // Escala la imagen para que su lado mayor no supere maxSide, sin ampliarla nunca
+    private static BufferedImage resize(BufferedImage image, int maxSide) {
+        double scale = Math.min(1.0, (double) maxSide / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(DERIVATIVE_QUALITY);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private record PresignedUrl(String url, long reuseUntil) {
+    }
 }
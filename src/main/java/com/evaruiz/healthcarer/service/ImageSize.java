@@ -0,0 +1,34 @@
+package com.evaruiz.healthcarer.service;
+
+import java.util.Arrays;
+
+public enum ImageSize {
+
+    THUMBNAIL("thumb", 160),
+    DETAIL("detail", 640),
+    ORIGINAL("original", 0);
+
+    private final String param;
+    private final int maxSide;
+
+    ImageSize(String param, int maxSide) {
+        this.param = param;
+        this.maxSide = maxSide;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public int getMaxSide() {
+        return maxSide;
+    }
+
+    // Valores desconocidos devuelven la imagen original, como hacía el endpoint antes de tener derivadas
+    public static ImageSize fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(size -> size.param.equalsIgnoreCase(param))
+                .findFirst()
+                .orElse(ORIGINAL);
+    }
+}
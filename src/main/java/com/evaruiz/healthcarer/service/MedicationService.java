@@ -1,14 +1,19 @@
 package com.evaruiz.healthcarer.service;
 
+import com.evaruiz.healthcarer.model.DTO.MedicationStockDTO;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.repository.MedicationRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -22,33 +27,50 @@ public class MedicationService {
         return medicationRepository.findByUserId(id);
     }
 
+    public List<MedicationStockDTO> findMedicationStockByUserId(Long id) {
+        return medicationRepository.findStockByUserId(id);
+    }
+
     public Optional<MedicationDB> findById(Long id) {
         return medicationRepository.findById(id);
     }
 
+    public Optional<MedicationDB> findByIdAndUserId(Long id, Long userId) {
+        return medicationRepository.findByIdAndUserId(id, userId);
+    }
+
+    // Resuelve toda la selección de un formulario con una sola consulta IN. Si falta alguna medicación,
+    // porque no existe o es de otro usuario, se rechaza la selección entera
+    public List<MedicationDB> findAllByIdAndUserId(Collection<Long> ids, Long userId) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.isEmpty()) {
+            return List.of();
+        }
+        List<MedicationDB> medications = medicationRepository.findAllByIdInAndUserId(distinctIds, userId);
+        if (medications.size() != distinctIds.size()) {
+            throw new EntityNotFoundException("No existen una o más medicaciones: " + distinctIds);
+        }
+        return medications;
+    }
+
     public MedicationDB saveMedication(MedicationDB medication) {
         medicationRepository.save(medication);
         return medication;
     }
 
-    public void removeMedicationFromUser(Long id) {
-        MedicationDB medication = medicationRepository.findById(id)
+    // Se guarda la entidad en vez de lanzar un UPDATE masivo para que CacheInvalidator avise al resto de réplicas
+    @Transactional
+    public void removeMedicationFromUser(Long id, Long userId) {
+        MedicationDB medication = medicationRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new EntityNotFoundException("No existe la medicación con ID: " + id));
 
         medication.setUser(null);
         medicationRepository.save(medication);
     }
 
-    public void discountMedicationStock(Long medicationId) {
-        MedicationDB medication = medicationRepository.findById(medicationId)
-                .orElseThrow(() -> new EntityNotFoundException("No existe la medicación con ID: " + medicationId));
-
-        if (medication.getStock() > 0) {
-            medication.setStock(medication.getStock() - 1);
-            medicationRepository.save(medication);
-        } else {
-            throw new IllegalStateException("No hay stock disponible para la medicación con ID: " + medicationId);
-        }
-        medicationRepository.save(medication);
+    // Devuelve los IDs de las medicaciones que no tenían stock para descontar
+    @Transactional
+    public List<Long> discountMedicationStock(Collection<Long> medicationIds) {
+        return medicationRepository.discountStock(medicationIds);
     }
 }
@@ -1,12 +1,20 @@
 package com.evaruiz.healthcarer.service;
 
+import com.evaruiz.healthcarer.model.DTO.TakeMedicationRow;
+import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TakeDB;
+import com.evaruiz.healthcarer.model.UserDB;
 import com.evaruiz.healthcarer.repository.TakeRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -14,19 +22,63 @@ import java.util.Optional;
 public class TakeService {
 
     private final TakeRepository takeRepository;
+    private final MedicationService medicationService;
 
 
     public List<TakeDB> findTakesByUserId(Long id) {
         return takeRepository.findAllByUserId(id);
     }
+    public List<TakeMedicationRow> findTakeRowsPage(Long userId, LocalDateTime beforeDate, Long beforeId, int size) {
+        List<Long> ids = beforeDate == null || beforeId == null
+                ? takeRepository.findLatestTakeIds(userId, Limit.of(size))
+                : takeRepository.findTakeIdsBefore(userId, beforeDate, beforeId, Limit.of(size));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return takeRepository.findTakeRowsByIds(ids);
+    }
     public Optional<TakeDB> findById(Long id) {
         return takeRepository.findById(id);
     }
+    public Optional<TakeDB> findWithMedicationsById(Long id) {
+        return takeRepository.findWithMedicationsById(id);
+    }
+    public Optional<TakeDB> findByIdAndUserId(Long id, Long userId) {
+        return takeRepository.findByIdAndUserId(id, userId);
+    }
+    public Optional<TakeDB> findWithMedicationsByIdAndUserId(Long id, Long userId) {
+        return takeRepository.findWithMedicationsByIdAndUserId(id, userId);
+    }
     public void save(TakeDB take) {
         takeRepository.save(take);
     }
+    // Registra la toma y descuenta una unidad de cada medicación en la misma transacción: el número de
+    // consultas no depende de cuántas medicaciones se hayan seleccionado. Si alguna está agotada la toma se
+    // rechaza y la excepción deshace los descuentos ya hechos
+    @Transactional
+    public TakeDB recordTake(LocalDateTime date, Collection<Long> medicationIds, UserDB user) {
+        List<MedicationDB> medications = medicationService.findAllByIdAndUserId(medicationIds, user.getId());
+        List<Long> outOfStock = medicationService.discountMedicationStock(medications.stream().map(MedicationDB::getId).toList());
+        if (!outOfStock.isEmpty()) {
+            throw new IllegalStateException("No hay stock disponible para: " + medications.stream()
+                    .filter(medication -> outOfStock.contains(medication.getId()))
+                    .map(MedicationDB::getName)
+                    .collect(Collectors.joining(", ")));
+        }
+        TakeDB take = new TakeDB();
+        take.setDate(date);
+        take.setMedications(medications);
+        take.setUser(user);
+        takeRepository.save(take);
+        return take;
+    }
     public void deleteById(Long id) {
         takeRepository.deleteById(id);
     }
+    // Devuelve false si la toma no existe o es de otro usuario
+    @Transactional
+    public boolean deleteByIdAndUserId(Long id, Long userId) {
+        return takeRepository.deleteByIdAndUserId(id, userId) > 0;
+    }
 
 }
@@ -1,9 +1,11 @@
 package com.evaruiz.healthcarer.service;
 
+import com.evaruiz.healthcarer.model.DTO.TreatmentMedicationRow;
 import com.evaruiz.healthcarer.model.TreatmentDB;
 import com.evaruiz.healthcarer.repository.TreatmentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,14 +19,31 @@ public class TreatmentService {
     public List<TreatmentDB> findTreatmentsByUserId(Long id) {
         return treatmentRepository.findAllByUserId(id);
     }
+    public List<TreatmentMedicationRow> findTreatmentRowsByUserId(Long id) {
+        return treatmentRepository.findTreatmentRowsByUserId(id);
+    }
     public Optional<TreatmentDB> findById(Long id) {
         return treatmentRepository.findById(id);
     }
+    public Optional<TreatmentDB> findWithMedicationsById(Long id) {
+        return treatmentRepository.findWithMedicationsById(id);
+    }
+    public Optional<TreatmentDB> findByIdAndUserId(Long id, Long userId) {
+        return treatmentRepository.findByIdAndUserId(id, userId);
+    }
+    public Optional<TreatmentDB> findWithMedicationsByIdAndUserId(Long id, Long userId) {
+        return treatmentRepository.findWithMedicationsByIdAndUserId(id, userId);
+    }
     public TreatmentDB save(TreatmentDB take) {
         return treatmentRepository.save(take);
     }
     public void deleteById(Long id) {
         treatmentRepository.deleteById(id);
     }
+    // Devuelve false si el tratamiento no existe o es de otro usuario
+    @Transactional
+    public boolean deleteByIdAndUserId(Long id, Long userId) {
+        return treatmentRepository.deleteByIdAndUserId(id, userId) > 0;
+    }
 
 }
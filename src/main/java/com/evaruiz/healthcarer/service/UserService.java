@@ -6,6 +6,7 @@ import com.evaruiz.healthcarer.model.DTO.LoggedUser;
 import com.evaruiz.healthcarer.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -15,7 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 @RequiredArgsConstructor
 @Service
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
@@ -43,6 +44,16 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + email));
     }
 
+    // Spring Security la llama tras un login correcto si el hash se generó con otro coste de BCrypt
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newEncodedPassword) {
+        UserDB userDB = userRepository.findByEmail(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + user.getUsername()));
+        userDB.setEncodedPassword(newEncodedPassword);
+        return new LoggedUser(userRepository.save(userDB));
+    }
+
     public boolean findByEmail(String normalizedEmail) {
         return userRepository.findByEmail(normalizedEmail).isPresent();
     }
@@ -60,11 +71,9 @@ public class UserService implements UserDetailsService {
         return userRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + id));
     }
 
-    public void removeTakeFromUser(Long currentUser, Long id) {
-        UserDB user = userRepository.findById(currentUser)
-                .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + currentUser));
-        user.getTakes().removeIf(take -> take.getId().equals(id));
-        userRepository.save(user);
+    // Proxy sin inicializar: basta para guardar la FK del usuario en una entidad nueva
+    public UserDB getReference(Long id) {
+        return userRepository.getReferenceById(id);
     }
 }
 
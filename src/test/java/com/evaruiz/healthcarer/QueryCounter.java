@@ -0,0 +1,39 @@
+package com.evaruiz.healthcarer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryCounter {
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    // Vacía el contexto de persistencia para que las consultas medidas no se resuelvan desde la caché de primer nivel
+    public void startCounting(EntityManager entityManager) {
+        entityManager.flush();
+        entityManager.clear();
+        reset();
+    }
+
+    public long count() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    public void assertAtMost(long maxStatements) {
+        long executed = count();
+        assertTrue(executed <= maxStatements,
+                "Expected at most " + maxStatements + " SQL statements but " + executed + " were executed");
+    }
+}
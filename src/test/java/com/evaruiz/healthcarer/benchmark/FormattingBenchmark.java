@@ -0,0 +1,79 @@
+package com.evaruiz.healthcarer.benchmark;
+
+import com.evaruiz.healthcarer.model.DTO.FormattedDateTake;
+import com.evaruiz.healthcarer.model.DTO.MedicationSummaryDTO;
+import com.evaruiz.healthcarer.model.DTO.TakeMedicationRow;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Compara el formateo de la lista de tomas creando los formatters por elemento y ordenando por la fecha ya
+// formateada (como hacía TakeController) con el recorrido único de filas ya ordenadas por la base de datos
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormattingBenchmark {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    @Param({"20", "1000"})
+    public int takes;
+
+    private List<TakeMedicationRow> rows;
+
+    @Setup
+    public void setUp() {
+        rows = new ArrayList<>();
+        LocalDateTime date = LocalDateTime.of(2025, 7, 17, 10, 30);
+        for (long i = takes; i > 0; i--) {
+            LocalDateTime takeDate = date.minusHours(i * 6);
+            rows.add(new TakeMedicationRow(i, takeDate, 1L, "Ibuprofen", 200.0f));
+            rows.add(new TakeMedicationRow(i, takeDate, 2L, "Paracetamol", 500.0f));
+        }
+    }
+
+    @Benchmark
+    public List<FormattedDateTake> formatPerItem() {
+        List<FormattedDateTake> formattedTakes = new ArrayList<>();
+        FormattedDateTake current = null;
+        for (TakeMedicationRow row : rows) {
+            if (current == null || !current.id().equals(row.takeId())) {
+                DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+                DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+                current = new FormattedDateTake(row.takeId(), row.date().format(dateFormatter),
+                        row.date().format(timeFormatter), new ArrayList<>());
+                formattedTakes.add(current);
+            }
+            current.medications().add(new MedicationSummaryDTO(row.medicationId(), row.medicationName(), row.medicationDose()));
+        }
+        for (FormattedDateTake take : formattedTakes) {
+            take.medications().sort(Comparator.comparing(MedicationSummaryDTO::name));
+        }
+        formattedTakes.sort(Comparator.comparing(FormattedDateTake::date).reversed());
+        return formattedTakes;
+    }
+
+    @Benchmark
+    public List<FormattedDateTake> formatSharedFormatters() {
+        List<FormattedDateTake> formattedTakes = new ArrayList<>();
+        FormattedDateTake current = null;
+        for (TakeMedicationRow row : rows) {
+            if (current == null || !current.id().equals(row.takeId())) {
+                current = new FormattedDateTake(row.takeId(), row.date().format(DATE_FORMATTER),
+                        row.date().format(TIME_FORMATTER), new ArrayList<>());
+                formattedTakes.add(current);
+            }
+            current.medications().add(new MedicationSummaryDTO(row.medicationId(), row.medicationName(), row.medicationDose()));
+        }
+        return formattedTakes;
+    }
+}
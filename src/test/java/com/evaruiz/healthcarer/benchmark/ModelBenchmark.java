@@ -0,0 +1,41 @@
+package com.evaruiz.healthcarer.benchmark;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.model.TreatmentDB;
+import com.evaruiz.healthcarer.model.UserDB;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+    private TreatmentDB treatment;
+    private UserDB user;
+
+    @Setup
+    public void setUp() {
+        user = new UserDB(1L, "Bench User", "bench@example.com", "$2a$10$abcdefghijklmnopqrstuv", "USER",
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        LocalDateTime now = LocalDateTime.now();
+        treatment = new TreatmentDB(1L, "Bench Treatment", now.minusDays(1), now.plusDays(1), now.minusHours(6).plusMinutes(5),
+                6.0f, new ArrayList<>(), user);
+    }
+
+    @Benchmark
+    public boolean checkIntakeDates() {
+        return treatment.checkIntakeDates();
+    }
+
+    @Benchmark
+    public LoggedUser loggedUser() {
+        return new LoggedUser(user);
+    }
+}
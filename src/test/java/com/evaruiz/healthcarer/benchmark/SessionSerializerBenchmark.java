@@ -0,0 +1,56 @@
+package com.evaruiz.healthcarer.benchmark;
+
+import com.evaruiz.healthcarer.config.SessionSerializer;
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.model.UserDB;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Compara la serialización Java por defecto de Spring Session con SessionSerializer para el SecurityContext
+// que se lee en cada petición. El tamaño de cada formato se imprime al preparar el benchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionSerializerBenchmark {
+
+    @Param({"jdk", "compact"})
+    public String format;
+
+    private RedisSerializer<Object> serializer;
+    private SecurityContextImpl context;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() {
+        serializer = "jdk".equals(format) ? new JdkSerializationRedisSerializer() : new SessionSerializer();
+        LoggedUser user = new LoggedUser(new UserDB(1L, "Alice", "alice@example.com",
+                "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z2c6IEEJ1hW1lLSE3tW1Ac2u", "ROLE_USER",
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        UsernamePasswordAuthenticationToken token =
+                UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+        token.setDetails(new WebAuthenticationDetails("10.0.0.12", "3f1c2a6e-8a41-4d7e-9c55-0f0b8e2d4a19"));
+        context = new SecurityContextImpl(token);
+        serialized = serializer.serialize(context);
+        System.out.println(format + ": " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(context);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+}
@@ -0,0 +1,55 @@
+package com.evaruiz.healthcarer.benchmark;
+
+import com.evaruiz.healthcarer.model.DTO.FormattedDateTake;
+import com.evaruiz.healthcarer.model.DTO.MedicationSummaryDTO;
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+
+    @Param({"20", "1000"})
+    public int takes;
+
+    private Template template;
+    private Map<String, Object> model;
+
+    @Setup
+    public void setUp() {
+        Mustache.Compiler compiler = Mustache.compiler().defaultValue("").withLoader(TemplateBenchmark::load);
+        template = compiler.compile(load("takes/takes"));
+
+        List<FormattedDateTake> formattedTakes = new ArrayList<>();
+        for (long i = 0; i < takes; i++) {
+            formattedTakes.add(new FormattedDateTake(i, "2025-07-17", "10:30", List.of(
+                    new MedicationSummaryDTO(1L, "Ibuprofen", 200.0f),
+                    new MedicationSummaryDTO(2L, "Paracetamol", 500.0f))));
+        }
+        model = Map.of("takes", formattedTakes, "isPaged", false);
+    }
+
+    @Benchmark
+    public String renderTakes() {
+        return template.execute(model);
+    }
+
+    private static Reader load(String name) {
+        return new InputStreamReader(
+                TemplateBenchmark.class.getResourceAsStream("/templates/" + name + ".mustache"),
+                StandardCharsets.UTF_8);
+    }
+}
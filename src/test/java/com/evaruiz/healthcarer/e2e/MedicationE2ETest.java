@@ -1,5 +1,7 @@
 package com.evaruiz.healthcarer.e2e;
 
+import com.evaruiz.healthcarer.QueryCounter;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.*;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
@@ -8,6 +10,7 @@ import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
@@ -27,6 +30,9 @@ public class MedicationE2ETest {
     @LocalServerPort
     int port;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
     protected WebDriver driver;
     protected WebDriverWait wait;
     
@@ -129,4 +135,15 @@ public class MedicationE2ETest {
 
     }
 
+    @Test
+    public void medicationsPageQueryCountE2E() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        queryCounter.reset();
+
+        driver.navigate().refresh();
+        wait.until(ExpectedConditions.titleIs("Medicamentos"));
+
+        queryCounter.assertAtMost(1);
+    }
+
 }
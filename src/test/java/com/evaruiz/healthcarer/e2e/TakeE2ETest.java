@@ -1,5 +1,7 @@
 package com.evaruiz.healthcarer.e2e;
 
+import com.evaruiz.healthcarer.QueryCounter;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,7 @@ import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
@@ -28,6 +31,9 @@ public class TakeE2ETest {
     @LocalServerPort
     int port;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
     protected WebDriver driver;
     protected WebDriverWait wait;
 
@@ -139,4 +145,15 @@ public class TakeE2ETest {
         assertThat(driver.findElements(By.className("takes-item")).size()).isEqualTo(takeCount);
     }
 
+    @Test
+    public void takesPageQueryCountE2E() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        queryCounter.reset();
+
+        driver.navigate().refresh();
+        wait.until(ExpectedConditions.titleIs("Historial de tomas"));
+
+        queryCounter.assertAtMost(2);
+    }
+
 }
@@ -1,5 +1,7 @@
 package com.evaruiz.healthcarer.e2e;
 
+import com.evaruiz.healthcarer.QueryCounter;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,6 +10,7 @@ import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
@@ -26,6 +29,9 @@ public class TreatmentE2ETest {
     @LocalServerPort
     int port;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
     protected WebDriver driver;
     protected WebDriverWait wait;
 
@@ -159,4 +165,16 @@ public class TreatmentE2ETest {
         assertThat(driver.findElement(By.id("frequency")).getText()).isEqualTo("24.0 horas");
         assertThat(driver.findElements(By.className("medications")).size()).isGreaterThanOrEqualTo(1);
     }
+
+    @Test
+    public void treatmentsPageQueryCountE2E() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        queryCounter.reset();
+
+        driver.navigate().refresh();
+        wait.until(ExpectedConditions.titleIs("Lista de Tratamientos"));
+
+        queryCounter.assertAtMost(1);
+    }
+
 }
@@ -1,10 +1,14 @@
 package com.evaruiz.healthcarer.integration;
 
+import com.evaruiz.healthcarer.QueryCounter;
+import com.evaruiz.healthcarer.model.DTO.MedicationStockDTO;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.UserDB;
 import com.evaruiz.healthcarer.repository.MedicationRepository;
 import com.evaruiz.healthcarer.repository.UserRepository;
 import com.evaruiz.healthcarer.service.MedicationService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityNotFoundException; // Import the specific exception
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -34,6 +38,11 @@ class MedicationServiceIntegrationTest {
     private MedicationRepository medicationRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private QueryCounter queryCounter;
 
 
     private UserDB testUser1;
@@ -60,6 +69,8 @@ class MedicationServiceIntegrationTest {
 
         medication3 = new MedicationDB(null, "Aspirin", 75.0f, "Daily.", 100.0f, "img3.jpg", new ArrayList<>(), testUser2, new ArrayList<>());
         medication3 = medicationRepository.save(medication3);
+
+        queryCounter = new QueryCounter(entityManagerFactory);
     }
 
     @Test
@@ -74,6 +85,46 @@ class MedicationServiceIntegrationTest {
         assertFalse(foundMedications.stream().anyMatch(m -> m.getName().equals("Aspirin")));
     }
 
+    @Test
+    @DisplayName("GET medication stock by user ID ordered by name")
+    void medicationStockByUserId() {
+        List<MedicationStockDTO> stock = medicationService.findMedicationStockByUserId(testUser1.getId());
+
+        assertEquals(2, stock.size());
+        assertEquals("Ibuprofen", stock.get(0).name());
+        assertEquals(50.0f, stock.get(0).stock());
+        assertEquals("Paracetamol", stock.get(1).name());
+    }
+
+    @Test
+    @DisplayName("GET medications by user ID without loading their treatments, takes or user")
+    void medicationsByUserIdQueryCount() {
+        queryCounter.startCounting(entityManager);
+
+        List<MedicationDB> medications = medicationService.findMedicationsByUserId(testUser1.getId());
+        medications.forEach(MedicationDB::getName);
+        medicationService.findMedicationStockByUserId(testUser1.getId());
+
+        queryCounter.assertAtMost(2);
+    }
+
+    @Test
+    @DisplayName("Discount stock of several medications and return the ones without stock")
+    void discountMedicationStock() {
+        MedicationDB emptyMedication = new MedicationDB(null, "Empty", 0.0f, "Daily.", 10.0f, "img4.jpg", new ArrayList<>(), testUser1, new ArrayList<>());
+        emptyMedication = medicationRepository.save(emptyMedication);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> outOfStock = medicationService.discountMedicationStock(
+                List.of(medication1.getId(), medication2.getId(), emptyMedication.getId()));
+
+        assertEquals(List.of(emptyMedication.getId()), outOfStock);
+        assertEquals(99.0f, medicationRepository.findById(medication1.getId()).orElseThrow().getStock());
+        assertEquals(49.0f, medicationRepository.findById(medication2.getId()).orElseThrow().getStock());
+        assertEquals(0.0f, medicationRepository.findById(emptyMedication.getId()).orElseThrow().getStock());
+    }
+
     @Test
     @DisplayName("GET empty list when user has no medications")
     void emptyListMedications() {
@@ -146,7 +197,7 @@ class MedicationServiceIntegrationTest {
         Long userIdBefore = medication1.getUser().getId();
         assertEquals(userIdBefore, testUser1.getId(), "Medication should initially be linked to testUser1");
 
-        medicationService.removeMedicationFromUser(medicationIdToRemove);
+        medicationService.removeMedicationFromUser(medicationIdToRemove, testUser1.getId());
 
         Optional<MedicationDB> foundMedicationOptional = medicationRepository.findById(medicationIdToRemove);
         assertTrue(foundMedicationOptional.isPresent(), "Medication should still exist in the database");
@@ -164,9 +215,23 @@ class MedicationServiceIntegrationTest {
     void removingNonExistentMedication() {
         Long nonExistentId = 999L;
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () ->
-                medicationService.removeMedicationFromUser(nonExistentId)
+                medicationService.removeMedicationFromUser(nonExistentId, testUser1.getId())
         );
 
         assertEquals("No existe la medicación con ID: " + nonExistentId, exception.getMessage());
     }
+
+    @Test
+    @DisplayName("GET and remove only medications owned by the user")
+    void medicationsOfAnotherUser() {
+        Long medicationId = medication1.getId();
+
+        assertTrue(medicationService.findByIdAndUserId(medicationId, testUser1.getId()).isPresent());
+        assertTrue(medicationService.findByIdAndUserId(medicationId, testUser2.getId()).isEmpty());
+        assertThrows(EntityNotFoundException.class, () ->
+                medicationService.removeMedicationFromUser(medicationId, testUser2.getId())
+        );
+
+        assertEquals(testUser1.getId(), medicationRepository.findById(medicationId).orElseThrow().getUser().getId());
+    }
 }
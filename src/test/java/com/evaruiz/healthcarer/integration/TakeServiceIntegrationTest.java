@@ -1,5 +1,8 @@
 package com.evaruiz.healthcarer.integration;
 
+import com.evaruiz.healthcarer.QueryCounter;
+import com.evaruiz.healthcarer.model.DTO.MedicationStockDTO;
+import com.evaruiz.healthcarer.model.DTO.TakeMedicationRow;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TakeDB;
 import com.evaruiz.healthcarer.model.UserDB;
@@ -7,6 +10,10 @@ import com.evaruiz.healthcarer.repository.MedicationRepository;
 import com.evaruiz.healthcarer.repository.TakeRepository;
 import com.evaruiz.healthcarer.repository.UserRepository;
 import com.evaruiz.healthcarer.service.TakeService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -40,6 +47,11 @@ class TakeServiceIntegrationTest {
     private UserRepository userRepository;
     @Autowired
     private MedicationRepository medicationRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private QueryCounter queryCounter;
 
 
     private UserDB testUser1;
@@ -74,6 +86,8 @@ class TakeServiceIntegrationTest {
 
         TakeDB take3 = new TakeDB(null, now.plusHours(1), Collections.singletonList(medication1), testUser2);
         takeRepository.save(take3);
+
+        queryCounter = new QueryCounter(entityManagerFactory);
     }
 
 
@@ -90,6 +104,38 @@ class TakeServiceIntegrationTest {
         assertFalse(foundTakes.stream().anyMatch(t -> t.getUser().getId().equals(testUser2.getId())));
     }
 
+    @Test
+    @DisplayName("GET first page of take rows, newest first with medications ordered by name")
+    void firstTakeRowsPage() {
+        List<TakeMedicationRow> rows = takeService.findTakeRowsPage(testUser1.getId(), null, null, 1);
+
+        assertEquals(2, rows.size());
+        assertEquals(take2.getId(), rows.get(0).takeId());
+        assertEquals("Ibuprofen", rows.get(0).medicationName());
+        assertEquals(take2.getId(), rows.get(1).takeId());
+        assertEquals("Paracetamol", rows.get(1).medicationName());
+    }
+
+    @Test
+    @DisplayName("GET next page of take rows after the given cursor")
+    void nextTakeRowsPage() {
+        List<TakeMedicationRow> rows = takeService.findTakeRowsPage(testUser1.getId(), take2.getDate(), take2.getId(), 10);
+
+        assertEquals(1, rows.size());
+        assertEquals(take1.getId(), rows.get(0).takeId());
+        assertEquals(500.0f, rows.get(0).medicationDose());
+    }
+
+    @Test
+    @DisplayName("GET a page of the take history with at most two queries")
+    void takeRowsPageQueryCount() {
+        queryCounter.startCounting(entityManager);
+
+        takeService.findTakeRowsPage(testUser1.getId(), null, null, 20);
+
+        queryCounter.assertAtMost(2);
+    }
+
     @Test
     @DisplayName("GET empty list if no takes for user ID")
     void emptyListIfNoTakesForUserId() {
@@ -117,6 +163,30 @@ class TakeServiceIntegrationTest {
         assertTrue(foundTake.getMedications().stream().anyMatch(m -> m.getId().equals(medication1.getId())));
     }
 
+    @Test
+    @DisplayName("GET take by ID with its medications but without its user")
+    void takeWithMedicationsById() {
+        entityManager.flush();
+        entityManager.clear();
+
+        TakeDB foundTake = takeService.findWithMedicationsById(take2.getId()).orElseThrow();
+
+        assertTrue(Hibernate.isInitialized(foundTake.getMedications()));
+        assertEquals(2, foundTake.getMedications().size());
+        assertFalse(Hibernate.isInitialized(foundTake.getUser()));
+    }
+
+    @Test
+    @DisplayName("GET take with its medications in a single query")
+    void takeWithMedicationsQueryCount() {
+        queryCounter.startCounting(entityManager);
+
+        TakeDB foundTake = takeService.findWithMedicationsById(take2.getId()).orElseThrow();
+        foundTake.getMedications().forEach(MedicationDB::getName);
+
+        queryCounter.assertAtMost(1);
+    }
+
     @Test
     @DisplayName("GET empty optional when take not found by ID")
     void takeNotFoundById() {
@@ -185,4 +255,81 @@ class TakeServiceIntegrationTest {
     void deletingNonExistentTake() {
         assertDoesNotThrow(() -> takeService.deleteById(999L));
     }
+
+    @Test
+    @DisplayName("GET a take only for its owner")
+    void takeByIdAndUserId() {
+        Optional<TakeDB> ownTake = takeService.findWithMedicationsByIdAndUserId(take2.getId(), testUser1.getId());
+
+        assertTrue(ownTake.isPresent());
+        assertTrue(Hibernate.isInitialized(ownTake.get().getMedications()));
+        assertEquals(2, ownTake.get().getMedications().size());
+        assertTrue(takeService.findByIdAndUserId(take2.getId(), testUser2.getId()).isEmpty());
+        assertTrue(takeService.findWithMedicationsByIdAndUserId(take2.getId(), testUser2.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("DELETE a take only for its owner")
+    void deleteTakeByIdAndUserId() {
+        Long idToDelete = take2.getId();
+
+        assertFalse(takeService.deleteByIdAndUserId(idToDelete, testUser2.getId()));
+        assertTrue(takeRepository.findById(idToDelete).isPresent(), "Take of another user should not be deleted");
+
+        assertTrue(takeService.deleteByIdAndUserId(idToDelete, testUser1.getId()));
+        assertFalse(takeRepository.findById(idToDelete).isPresent(), "Take should be deleted from DB");
+        assertEquals(1, takeService.findTakesByUserId(testUser1.getId()).size());
+    }
+
+    @Test
+    @DisplayName("POST a take with several medications in a constant number of statements")
+    void recordTakeQueryCount() {
+        LocalDateTime date = LocalDateTime.now().minusMinutes(5).truncatedTo(java.time.temporal.ChronoUnit.SECONDS);
+        queryCounter.startCounting(entityManager);
+
+        TakeDB recorded = takeService.recordTake(date, List.of(medication1.getId(), medication2.getId()),
+                userRepository.getReferenceById(testUser1.getId()));
+        entityManager.flush();
+
+        // SELECT ... IN, INSERT de la toma y un lote para take_medication; el descuento de stock va por JDBC
+        queryCounter.assertAtMost(3);
+        entityManager.clear();
+        assertEquals(2, takeService.findWithMedicationsById(recorded.getId()).orElseThrow().getMedications().size());
+        // Proyección directa: la caché de segundo nivel sólo se invalida al confirmar la transacción
+        List<MedicationStockDTO> stock = medicationRepository.findStockByUserId(testUser1.getId());
+        assertEquals(49.0f, stock.get(0).stock());
+        assertEquals(99.0f, stock.get(1).stock());
+    }
+
+    @Test
+    @DisplayName("POST a take with a medication of another user is rejected")
+    void recordTakeWithForeignMedication() {
+        MedicationDB foreignMedication = new MedicationDB(null, "Foreign", 10.0f, "Daily.", 1.0f, "img3.jpg", new ArrayList<>(), testUser2, new ArrayList<>());
+        Long foreignId = medicationRepository.save(foreignMedication).getId();
+        int takesBefore = takeService.findTakesByUserId(testUser1.getId()).size();
+
+        assertThrows(EntityNotFoundException.class, () ->
+                takeService.recordTake(LocalDateTime.now().minusMinutes(5), List.of(medication1.getId(), foreignId), testUser1));
+
+        assertEquals(takesBefore, takeService.findTakesByUserId(testUser1.getId()).size());
+    }
+
+    @Test
+    @DisplayName("POST a take with an out-of-stock medication is rejected")
+    void recordTakeWithoutStock() {
+        MedicationDB exhausted = new MedicationDB(null, "Exhausted", 0.0f, "Daily.", 1.0f, "img4.jpg", new ArrayList<>(), testUser1, new ArrayList<>());
+        Long exhaustedId = medicationRepository.save(exhausted).getId();
+        int takesBefore = takeService.findTakesByUserId(testUser1.getId()).size();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                takeService.recordTake(LocalDateTime.now().minusMinutes(5), List.of(medication1.getId(), exhaustedId), testUser1));
+
+        assertTrue(exception.getMessage().contains("Exhausted"));
+        assertFalse(exception.getMessage().contains("Paracetamol"));
+        assertEquals(takesBefore, takeService.findTakesByUserId(testUser1.getId()).size());
+        MedicationStockDTO stock = medicationRepository.findStockByUserId(testUser1.getId()).stream()
+                .filter(row -> row.id().equals(exhaustedId))
+                .findFirst().orElseThrow();
+        assertEquals(0.0f, stock.stock());
+    }
 }
@@ -1,5 +1,8 @@
 package com.evaruiz.healthcarer.integration;
 
+import com.evaruiz.healthcarer.QueryCounter;
+import com.evaruiz.healthcarer.model.DTO.LowStockAlert;
+import com.evaruiz.healthcarer.model.DTO.TreatmentMedicationRow;
 import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TreatmentDB;
 import com.evaruiz.healthcarer.model.UserDB;
@@ -7,6 +10,9 @@ import com.evaruiz.healthcarer.repository.MedicationRepository;
 import com.evaruiz.healthcarer.repository.TreatmentRepository;
 import com.evaruiz.healthcarer.repository.UserRepository;
 import com.evaruiz.healthcarer.service.TreatmentService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -37,6 +43,11 @@ class TreatmentServiceIntegrationTest {
     private UserRepository userRepository;
     @Autowired
     private MedicationRepository medicationRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private QueryCounter queryCounter;
 
     private UserDB testUser1;
     private UserDB testUser2;
@@ -70,6 +81,8 @@ class TreatmentServiceIntegrationTest {
 
         TreatmentDB treatment3 = new TreatmentDB(null, "User2's Treatment", now.minusDays(1), now.plusDays(1), now.minusHours(1), 8.0f, new ArrayList<>(Collections.singletonList(medicationA)), testUser2);
         treatmentRepository.save(treatment3);
+
+        queryCounter = new QueryCounter(entityManagerFactory);
     }
 
 
@@ -86,6 +99,17 @@ class TreatmentServiceIntegrationTest {
         assertFalse(foundTreatments.stream().anyMatch(t -> t.getUser().getId().equals(testUser2.getId())));
     }
 
+    @Test
+    @DisplayName("GET treatment list rows with their medications in a single query")
+    void treatmentRowsQueryCount() {
+        queryCounter.startCounting(entityManager);
+
+        List<TreatmentMedicationRow> rows = treatmentService.findTreatmentRowsByUserId(testUser1.getId());
+
+        assertEquals(3, rows.size());
+        queryCounter.assertAtMost(1);
+    }
+
     @Test
     @DisplayName("GET empty list if no treatments for user ID")
     void emptyListIfNoTreatmentsForUserId() {
@@ -173,6 +197,67 @@ class TreatmentServiceIntegrationTest {
 
 
 
+    @Test
+    @DisplayName("GET only treatments whose next intake falls within the reminder window")
+    void treatmentsDueForIntake() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        TreatmentDB dueTreatment = new TreatmentDB(null, "Due Treatment", now.minusDays(1), now.plusDays(1), now.minusHours(6).plusMinutes(5), 6.0f, new ArrayList<>(List.of(medicationA)), testUser1);
+        dueTreatment = treatmentRepository.save(dueTreatment);
+
+        List<TreatmentDB> dueTreatments = treatmentRepository.findDueForIntake(now, now.plusMinutes(10));
+
+        assertEquals(1, dueTreatments.size());
+        assertEquals(dueTreatment.getId(), dueTreatments.get(0).getId());
+        assertEquals(now.plusMinutes(5), dueTreatments.get(0).getNextIntakeDate());
+    }
+
+    @Test
+    @DisplayName("GET due treatments with their user and medications in a single query")
+    void treatmentsDueForIntakeQueryCount() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        treatmentRepository.save(new TreatmentDB(null, "Due A", now.minusDays(1), now.plusDays(1), now.minusHours(6).plusMinutes(2), 6.0f, new ArrayList<>(List.of(medicationA, medicationB)), testUser1));
+        treatmentRepository.save(new TreatmentDB(null, "Due B", now.minusDays(1), now.plusDays(1), now.minusHours(6).plusMinutes(4), 6.0f, new ArrayList<>(List.of(medicationA)), testUser2));
+        queryCounter.startCounting(entityManager);
+
+        List<TreatmentDB> dueTreatments = treatmentRepository.findDueForIntake(now, now.plusMinutes(10));
+        for (TreatmentDB treatment : dueTreatments) {
+            treatment.getUser().getEmail();
+            treatment.getMedications().forEach(MedicationDB::getName);
+        }
+
+        assertEquals(2, dueTreatments.size());
+        queryCounter.assertAtMost(1);
+    }
+
+    @Test
+    @DisplayName("UPDATE reschedules the next intake when the last taken date changes")
+    void rescheduleNextIntake() {
+        TreatmentDB treatmentToUpdate = treatmentRepository.findById(treatment1.getId()).get();
+        LocalDateTime lastTaken = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        treatmentToUpdate.setLastTakenDate(lastTaken);
+
+        treatmentRepository.saveAndFlush(treatmentToUpdate);
+
+        TreatmentDB foundInDb = treatmentRepository.findById(treatment1.getId()).get();
+        assertEquals(lastTaken.plusHours(24), foundInDb.getNextIntakeDate());
+    }
+
+    @Test
+    @DisplayName("GET one low stock alert per medication even if it is shared by several treatments")
+    void lowStockAlerts() {
+        MedicationDB lowStockMed = new MedicationDB(null, "Low Stock Med", 3.0f, "Daily.", 100.0f, "low.jpg", new ArrayList<>(), testUser1, new ArrayList<>());
+        lowStockMed = medicationRepository.save(lowStockMed);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        treatmentRepository.save(new TreatmentDB(null, "Morning", now.minusDays(1), now.plusDays(1), now.minusHours(1), 24.0f, new ArrayList<>(List.of(lowStockMed)), testUser1));
+        treatmentRepository.save(new TreatmentDB(null, "Evening", now.minusDays(1), now.plusDays(1), now.minusHours(1), 24.0f, new ArrayList<>(List.of(lowStockMed, medicationA)), testUser1));
+
+        List<LowStockAlert> alerts = treatmentRepository.findLowStockAlerts(5.0f);
+
+        assertEquals(1, alerts.size());
+        assertEquals(lowStockMed.getId(), alerts.get(0).medicationId());
+        assertEquals(testUser1.getEmail(), alerts.get(0).email());
+    }
+
     @Test
     @DisplayName("DELETE a treatment by ID")
     void deleteTreatmentById() {
@@ -189,4 +274,29 @@ class TreatmentServiceIntegrationTest {
     void deletingNonExistentTreatment() {
         assertDoesNotThrow(() -> treatmentService.deleteById(999L));
     }
+
+    @Test
+    @DisplayName("GET a treatment only for its owner")
+    void treatmentByIdAndUserId() {
+        Optional<TreatmentDB> ownTreatment = treatmentService.findWithMedicationsByIdAndUserId(treatment2.getId(), testUser1.getId());
+
+        assertTrue(ownTreatment.isPresent());
+        assertTrue(Hibernate.isInitialized(ownTreatment.get().getMedications()));
+        assertEquals(2, ownTreatment.get().getMedications().size());
+        assertTrue(treatmentService.findByIdAndUserId(treatment2.getId(), testUser2.getId()).isEmpty());
+        assertTrue(treatmentService.findWithMedicationsByIdAndUserId(treatment2.getId(), testUser2.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("DELETE a treatment only for its owner")
+    void deleteTreatmentByIdAndUserId() {
+        Long idToDelete = treatment2.getId();
+
+        assertFalse(treatmentService.deleteByIdAndUserId(idToDelete, testUser2.getId()));
+        assertTrue(treatmentRepository.findById(idToDelete).isPresent(), "Treatment of another user should not be deleted");
+
+        assertTrue(treatmentService.deleteByIdAndUserId(idToDelete, testUser1.getId()));
+        assertFalse(treatmentRepository.findById(idToDelete).isPresent(), "Treatment should be deleted from DB");
+        assertEquals(1, treatmentService.findTreatmentsByUserId(testUser1.getId()).size());
+    }
 }
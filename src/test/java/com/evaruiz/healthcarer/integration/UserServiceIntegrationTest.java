@@ -1,9 +1,12 @@
 package com.evaruiz.healthcarer.integration;
 
+import com.evaruiz.healthcarer.QueryCounter;
 import com.evaruiz.healthcarer.model.DTO.RegisterUserDTO;
 import com.evaruiz.healthcarer.model.UserDB;
 import com.evaruiz.healthcarer.repository.UserRepository;
 import com.evaruiz.healthcarer.service.UserService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -35,6 +38,14 @@ class UserServiceIntegrationTest {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private QueryCounter queryCounter;
+
     private UserDB savedUser;
     private RegisterUserDTO registerUserDTO;
     private RegisterUserDTO updatedUserDTO;
@@ -48,6 +59,7 @@ class UserServiceIntegrationTest {
         userToSave.setEncodedPassword(passwordEncoder.encode("initialPass"));
         userToSave.setRole("USER");
         savedUser = userRepository.save(userToSave);
+        queryCounter = new QueryCounter(entityManagerFactory);
 
         registerUserDTO = new RegisterUserDTO(
                 "New Registered User",
@@ -164,6 +176,18 @@ class UserServiceIntegrationTest {
         assertEquals(savedUser.getEmail(), foundUser.getEmail());
     }
 
+    @Test
+    @DisplayName("GET user by ID and log in without loading their treatments, medications or takes")
+    void userLookupQueryCount() {
+        queryCounter.startCounting(entityManager);
+
+        userService.findById(savedUser.getId());
+        entityManager.clear();
+        userService.loadUserByUsername(savedUser.getEmail());
+
+        queryCounter.assertAtMost(2);
+    }
+
     @Test
     @DisplayName("GET non-existent user by ID")
     void nonExistentUserById() {
@@ -0,0 +1,97 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.security.BoundedPasswordEncoder;
+import com.evaruiz.healthcarer.security.LoginFailureHandler;
+import com.evaruiz.healthcarer.security.LoginOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new BoundedPasswordEncoder();
+        ReflectionTestUtils.setField(encoder, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(encoder, "strength", 4);
+        ReflectionTestUtils.setField(encoder, "threads", 1);
+        ReflectionTestUtils.setField(encoder, "queueCapacity", 1);
+        encoder.init();
+        callers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        encoder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Encoded password matches through the pool")
+    void encodeAndMatch() {
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("other", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    @DisplayName("Reject the hash when the pool and its queue are full")
+    void rejectWhenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BCryptPasswordEncoder slowDelegate = mock(BCryptPasswordEncoder.class);
+        when(slowDelegate.matches(any(), any())).thenAnswer(invocation -> release.await(5, TimeUnit.SECONDS));
+        ReflectionTestUtils.setField(encoder, "delegate", slowDelegate);
+
+        // Un hilo ocupa el único worker y otro se queda en la cola
+        Future<Boolean> running = callers.submit(() -> encoder.matches("secret", "hash"));
+        Future<Boolean> queued = callers.submit(() -> encoder.matches("secret", "hash"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("security.login.queue").gauge().value() < 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "La cola no llegó a llenarse");
+            Thread.sleep(10);
+        }
+
+        assertThrows(LoginOverloadedException.class, () -> encoder.matches("secret", "hash"));
+        assertEquals(1.0, meterRegistry.get("security.login.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Overloaded login answers 429 instead of bad credentials")
+    void overloadedLoginAnswers429() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new LoginFailureHandler("/login?error").onAuthenticationFailure(new MockHttpServletRequest(), response,
+                new LoginOverloadedException("Demasiados inicios de sesión en curso"));
+
+        assertEquals(429, response.getStatus());
+        assertEquals("5", response.getHeader("Retry-After"));
+        assertNull(response.getRedirectedUrl());
+    }
+}
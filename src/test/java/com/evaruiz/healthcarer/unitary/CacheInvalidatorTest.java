@@ -0,0 +1,106 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.config.CacheInvalidator;
+import com.evaruiz.healthcarer.model.MedicationDB;
+import com.evaruiz.healthcarer.model.UserDB;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidatorTest {
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private SessionFactoryImplementor sessionFactory;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private CacheInvalidator cacheInvalidator;
+    private ScheduledExecutorService reevictExecutor;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(entityManagerFactory.unwrap(SessionFactoryImplementor.class)).thenReturn(sessionFactory);
+        lenient().when(sessionFactory.getCache()).thenReturn(cache);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cacheInvalidator = new CacheInvalidator(entityManagerFactory, redisTemplate, meterRegistry);
+        reevictExecutor = Executors.newSingleThreadScheduledExecutor();
+        ReflectionTestUtils.setField(cacheInvalidator, "receivedCounter", meterRegistry.counter("received"));
+        ReflectionTestUtils.setField(cacheInvalidator, "reevictExecutor", reevictExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reevictExecutor.shutdownNow();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(CacheInvalidator.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Evict only the changed entity and the queries that depend on it")
+    void evictChangedEntityQueries() {
+        cacheInvalidator.onMessage(message("other-node|MedicationDB|5,6"), null);
+
+        verify(cache).evictEntityData(MedicationDB.class, 5L);
+        verify(cache).evictEntityData(MedicationDB.class, 6L);
+        verify(cache).evictQueryRegion("query.MedicationDB");
+        verify(cache, never()).evictQueryRegion("query.UserDB");
+        verify(cache, never()).evictDefaultQueryRegion();
+    }
+
+    @Test
+    @DisplayName("Evict the entity again once loads that were in flight have finished")
+    void reevictAfterDelay() {
+        cacheInvalidator.onMessage(message("other-node|UserDB|1"), null);
+
+        verify(cache, timeout(5000).times(2)).evictEntityData(UserDB.class, 1L);
+        verify(cache, timeout(5000).times(2)).evictQueryRegion("query.UserDB");
+    }
+
+    @Test
+    @DisplayName("Ignore an unknown entity")
+    void ignoreUnknownEntity() {
+        cacheInvalidator.onMessage(message("other-node|TakeDB|1"), null);
+
+        verify(cache, never()).evictQueryRegion(anyString());
+    }
+
+    @Test
+    @DisplayName("Discard every cached entity and query after subscribing again")
+    void evictAllOnSubscribe() {
+        cacheInvalidator.onChannelSubscribed(CacheInvalidator.CHANNEL.getBytes(StandardCharsets.UTF_8), 1);
+
+        verify(cache).evictEntityData(MedicationDB.class);
+        verify(cache).evictEntityData(UserDB.class);
+        verify(cache).evictQueryRegion("query.MedicationDB");
+        verify(cache).evictQueryRegion("query.UserDB");
+    }
+}
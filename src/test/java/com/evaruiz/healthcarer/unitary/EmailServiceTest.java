@@ -0,0 +1,151 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.service.EmailServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailServiceTest {
+
+    @Mock
+    private JavaMailSender emailSender;
+
+    @InjectMocks
+    private EmailServiceImpl emailService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(emailService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(emailService, "capacity", 100);
+        ReflectionTestUtils.setField(emailService, "workers", 1);
+        ReflectionTestUtils.setField(emailService, "batchSize", 10);
+        ReflectionTestUtils.setField(emailService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(emailService, "retryBackoffMs", 10L);
+        emailService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        emailService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Send a queued message through the mail sender in the background")
+    void sendQueuedMessage() {
+        emailService.sendSimpleMessage("user1@example.com", "Subject", "Text");
+
+        ArgumentCaptor<SimpleMailMessage[]> captor = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(emailSender, timeout(2000)).send(captor.capture());
+        SimpleMailMessage sent = captor.getValue()[0];
+        assertArrayEquals(new String[]{"user1@example.com"}, sent.getTo());
+        assertEquals("Subject", sent.getSubject());
+        assertEquals("Text", sent.getText());
+    }
+
+    @Test
+    @DisplayName("Retry a message until the maximum number of attempts is reached")
+    void retryFailedMessage() {
+        doThrow(new MailSendException("SMTP unavailable")).when(emailSender).send(any(SimpleMailMessage[].class));
+
+        emailService.sendSimpleMessage("user1@example.com", "Subject", "Text");
+
+        verify(emailSender, timeout(2000).times(3)).send(any(SimpleMailMessage[].class));
+        verify(emailSender, after(200).times(3)).send(any(SimpleMailMessage[].class));
+        assertEquals(1.0, meterRegistry.counter("mail.outbox.failed").count());
+    }
+
+    @Test
+    @DisplayName("Drop a message that fails unexpectedly and keep sending the rest")
+    void dropBrokenMessageAndKeepWorking() {
+        doAnswer(invocation -> {
+            SimpleMailMessage[] messages = invocation.getArgument(0);
+            for (SimpleMailMessage message : messages) {
+                if ("broken@example.com".equals(message.getTo()[0])) {
+                    throw new IllegalStateException("Encoding error");
+                }
+            }
+            return null;
+        }).when(emailSender).send(any(SimpleMailMessage[].class));
+
+        emailService.sendSimpleMessage("broken@example.com", "Subject", "Text");
+        verify(emailSender, timeout(2000)).send(any(SimpleMailMessage[].class));
+        emailService.sendSimpleMessage("user1@example.com", "Subject", "Text");
+
+        ArgumentCaptor<SimpleMailMessage[]> captor = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(emailSender, timeout(2000).times(2)).send(captor.capture());
+        assertEquals("user1@example.com", captor.getAllValues().get(1)[0].getTo()[0]);
+        assertEquals(1.0, meterRegistry.counter("mail.outbox.failed").count());
+    }
+
+    @Test
+    @DisplayName("Never queue more messages than the outbox capacity under concurrent senders")
+    void boundedOutboxUnderConcurrentSenders() throws Exception {
+        EmailServiceImpl boundedService = new EmailServiceImpl();
+        SimpleMeterRegistry boundedRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(boundedService, "emailSender", emailSender);
+        ReflectionTestUtils.setField(boundedService, "meterRegistry", boundedRegistry);
+        ReflectionTestUtils.setField(boundedService, "capacity", 10);
+        ReflectionTestUtils.setField(boundedService, "workers", 1);
+        ReflectionTestUtils.setField(boundedService, "batchSize", 10);
+        ReflectionTestUtils.setField(boundedService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(boundedService, "retryBackoffMs", 10L);
+        boundedService.init();
+        CountDownLatch smtpReleased = new CountDownLatch(1);
+        doAnswer(invocation -> smtpReleased.await(5, TimeUnit.SECONDS)).when(emailSender).send(any(SimpleMailMessage[].class));
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        try {
+            // El único worker se queda bloqueado enviando el primer mensaje, así nada más sale de la cola
+            boundedService.sendSimpleMessage("first@example.com", "Subject", "Text");
+            verify(emailSender, timeout(2000)).send(any(SimpleMailMessage[].class));
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> sends = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String to = "user" + i + "@example.com";
+                sends.add(senders.submit(() -> {
+                    start.await();
+                    boundedService.sendSimpleMessage(to, "Subject", "Text");
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> send : sends) {
+                send.get(5, TimeUnit.SECONDS);
+            }
+
+            assertEquals(10.0, boundedRegistry.get("mail.outbox.size").gauge().value());
+            assertEquals(40.0, boundedRegistry.counter("mail.outbox.rejected").count());
+        } finally {
+            smtpReleased.countDown();
+            senders.shutdownNow();
+            boundedService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.model.DTO.ImageMetadata;
+import com.evaruiz.healthcarer.service.ImageCache;
+import com.evaruiz.healthcarer.service.ImageService;
+import com.evaruiz.healthcarer.service.ImageSize;
+import io.minio.ComposeObjectArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.Result;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageServiceTest {
+
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private MinioClient presignMinioClient;
+
+    @Mock
+    private ImageCache imageCache;
+
+    @InjectMocks
+    private ImageService imageService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(imageService, "bucketName", "test-bucket");
+        ReflectionTestUtils.setField(imageService, "presignedExpirySeconds", 600);
+        ReflectionTestUtils.setField(imageService, "partSize", 8 * 1024 * 1024);
+        ReflectionTestUtils.setField(imageService, "uploadParallelism", 2);
+        ReflectionTestUtils.setField(imageService, "maxUploadBytes", 50L * 1024 * 1024);
+        ReflectionTestUtils.setField(imageService, "maxImagePixels", 50_000_000L);
+    }
+
+    @Test
+    @DisplayName("Upload an image together with its thumbnail and detail derivatives")
+    void uploadImageWithDerivatives() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "png", png);
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.png", "image/png", png.toByteArray());
+
+        String fileName = imageService.uploadImage(file);
+
+        ArgumentCaptor<PutObjectArgs> captor = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient, times(3)).putObject(captor.capture());
+        List<PutObjectArgs> uploads = captor.getAllValues();
+        assertEquals(fileName, uploads.get(0).object());
+        assertEquals("derivatives/thumb/" + fileName + ".jpg", uploads.get(1).object());
+        assertEquals("image/jpeg", uploads.get(1).contentType());
+        assertEquals("derivatives/detail/" + fileName + ".jpg", uploads.get(2).object());
+        assertTrue(uploads.get(1).objectSize() < png.size());
+    }
+
+    @Test
+    @DisplayName("Upload a duplicated image without storing it again")
+    void uploadDuplicatedImage() throws Exception {
+        when(minioClient.statObject(any())).thenReturn(mock(StatObjectResponse.class));
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1, 2, 3});
+        MockMultipartFile sameContent = new MockMultipartFile("imageFile", "other.jpg", "image/jpeg", new byte[]{1, 2, 3});
+
+        String fileName = imageService.uploadImage(file);
+
+        assertEquals(fileName, imageService.uploadImage(sameContent));
+        assertEquals("039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81", fileName);
+        verify(minioClient, never()).putObject(any());
+        // El objeto reutilizado se copia sobre sí mismo para renovar su fecha de modificación
+        ArgumentCaptor<CopyObjectArgs> captor = ArgumentCaptor.forClass(CopyObjectArgs.class);
+        verify(minioClient, times(2)).copyObject(captor.capture());
+        assertEquals(fileName, captor.getValue().object());
+        assertEquals(fileName, captor.getValue().source().object());
+        verify(imageCache, times(2)).invalidate(fileName);
+    }
+
+    @Test
+    @DisplayName("Upload a large image in parallel parts composed under its content hash")
+    void uploadImageInParts() throws Exception {
+        ReflectionTestUtils.setField(imageService, "partSize", 4);
+        imageService.init();
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+
+        try {
+            String fileName = imageService.uploadImage(file);
+
+            assertEquals(64, fileName.length());
+            // Tres partes y el marcador de imagen no decodificable
+            verify(minioClient, times(4)).putObject(any());
+            ArgumentCaptor<ComposeObjectArgs> captor = ArgumentCaptor.forClass(ComposeObjectArgs.class);
+            verify(minioClient).composeObject(captor.capture());
+            assertEquals(fileName, captor.getValue().object());
+            assertEquals(3, captor.getValue().sources().size());
+            verify(minioClient).removeObjects(any());
+        } finally {
+            imageService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Build the derivatives of an image uploaded in parts")
+    void uploadImageInPartsWithDerivatives() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB), "png", png);
+        ReflectionTestUtils.setField(imageService, "partSize", png.size() / 2 + 1);
+        imageService.init();
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.png", "image/png", png.toByteArray());
+
+        try {
+            String fileName = imageService.uploadImage(file);
+
+            ArgumentCaptor<PutObjectArgs> captor = ArgumentCaptor.forClass(PutObjectArgs.class);
+            verify(minioClient, times(4)).putObject(captor.capture());
+            List<String> objects = captor.getAllValues().stream().map(PutObjectArgs::object).toList();
+            assertTrue(objects.contains("derivatives/thumb/" + fileName + ".jpg"));
+            assertTrue(objects.contains("derivatives/detail/" + fileName + ".jpg"));
+            verify(minioClient).composeObject(any());
+        } finally {
+            imageService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Reject an image larger than the upload limit")
+    void uploadTooLargeImage() {
+        ReflectionTestUtils.setField(imageService, "maxUploadBytes", 2L);
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1, 2, 3});
+
+        assertThrows(IllegalArgumentException.class, () -> imageService.uploadImage(file));
+        verifyNoInteractions(minioClient);
+    }
+
+    @Test
+    @DisplayName("Reject an image whose header declares too many pixels before decoding it")
+    void uploadTooManyPixels() throws Exception {
+        ReflectionTestUtils.setField(imageService, "maxImagePixels", 1000L);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB), "png", png);
+        MockMultipartFile file = new MockMultipartFile("imageFile", "bomb.png", "image/png", png.toByteArray());
+
+        assertThrows(IllegalArgumentException.class, () -> imageService.uploadImage(file));
+        verify(minioClient, never()).putObject(any());
+    }
+
+    @Test
+    @DisplayName("Find objects of unreferenced images and stale upload parts")
+    void orphanedObjects() throws Exception {
+        ZonedDateTime old = ZonedDateTime.now().minusDays(1);
+        List<Result<Item>> objects = List.of(
+                new Result<>(item("shared", old)),
+                new Result<>(item("derivatives/thumb/shared.jpg", old)),
+                new Result<>(item("orphan", old)),
+                new Result<>(item("derivatives/detail/orphan.jpg", old)),
+                new Result<>(item("uploads/1234/part-0", old)),
+                new Result<>(item("recent", ZonedDateTime.now())),
+                new Result<>(item("derivatives/thumb/reused.jpg", old)),
+                new Result<>(item("reused", ZonedDateTime.now())));
+        when(minioClient.listObjects(any())).thenReturn(objects);
+
+        List<String> orphaned = imageService.findOrphanedObjects(Set.of("shared"), ZonedDateTime.now().minusHours(1));
+
+        assertEquals(List.of("orphan", "derivatives/detail/orphan.jpg", "uploads/1234/part-0"), orphaned);
+    }
+
+    private static Item item(String objectName, ZonedDateTime lastModified) {
+        Item item = mock(Item.class);
+        lenient().when(item.objectName()).thenReturn(objectName);
+        lenient().when(item.lastModified()).thenReturn(lastModified);
+        return item;
+    }
+
+    @Test
+    @DisplayName("Upload only the original when the image format cannot be decoded")
+    void uploadUndecodableImage() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("imageFile", "photo.heic", "image/heic", new byte[]{1, 2, 3});
+
+        String fileName = imageService.uploadImage(file);
+
+        ArgumentCaptor<PutObjectArgs> captor = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient, times(2)).putObject(captor.capture());
+        assertEquals(fileName, captor.getAllValues().get(0).object());
+        assertEquals("derivatives/undecodable/" + fileName, captor.getAllValues().get(1).object());
+    }
+
+    @Test
+    @DisplayName("Serve the original of an undecodable image without downloading it on every request")
+    void undecodableImageMetadata() throws Exception {
+        ErrorResponse notFound = new ErrorResponse("NoSuchKey", "Not found", "test-bucket", "photo.heic", null, null, null);
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(minioClient.statObject(argThat(args -> args != null && args.object().startsWith("derivatives/thumb/"))))
+                .thenThrow(new ErrorResponseException(notFound, null, null));
+        when(minioClient.statObject(argThat(args -> args != null && !args.object().startsWith("derivatives/thumb/"))))
+                .thenReturn(stat);
+
+        assertEquals("photo.heic", imageService.getImageMetadata("photo.heic", ImageSize.THUMBNAIL).objectName());
+        assertEquals("photo.heic", imageService.getImageMetadata("photo.heic", ImageSize.THUMBNAIL).objectName());
+
+        // Derivada, marcador y original la primera vez; después sólo el original
+        verify(minioClient, times(4)).statObject(any());
+        verify(minioClient, never()).getObject(any());
+    }
+
+    @Test
+    @DisplayName("GET metadata of an existing thumbnail without downloading the image")
+    void thumbnailMetadata() throws Exception {
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        ZonedDateTime lastModified = ZonedDateTime.now();
+        when(stat.etag()).thenReturn("abc123");
+        when(stat.lastModified()).thenReturn(lastModified);
+        when(stat.size()).thenReturn(4096L);
+        when(stat.contentType()).thenReturn("image/jpeg");
+        when(minioClient.statObject(any())).thenReturn(stat);
+
+        ImageMetadata metadata = imageService.getImageMetadata("photo.png", ImageSize.THUMBNAIL);
+
+        assertEquals("derivatives/thumb/photo.png.jpg", metadata.objectName());
+        assertEquals("abc123", metadata.etag());
+        assertEquals(lastModified, metadata.lastModified());
+        assertEquals(4096L, metadata.size());
+        verify(minioClient, never()).getObject(any());
+    }
+
+    @Test
+    @DisplayName("GET null metadata when the image does not exist")
+    void missingImageMetadata() throws Exception {
+        ErrorResponse notFound = new ErrorResponse("NoSuchKey", "Not found", "test-bucket", "missing.png", null, null, null);
+        when(minioClient.statObject(any())).thenThrow(new ErrorResponseException(notFound, null, null));
+
+        assertNull(imageService.getImageMetadata("missing.png", ImageSize.DETAIL));
+        verify(minioClient, never()).getObject(any());
+    }
+
+    @Test
+    @DisplayName("Reuse the presigned URL of an image without asking MinIO again while it is still valid")
+    void cachedPresignedUrl() throws Exception {
+        when(minioClient.statObject(any())).thenReturn(mock(StatObjectResponse.class));
+        when(presignMinioClient.getPresignedObjectUrl(any())).thenReturn("http://localhost:9000/test-bucket/photo.png?X-Amz-Signature=abc");
+
+        String first = imageService.getPresignedUrl("photo.png", ImageSize.ORIGINAL);
+        String second = imageService.getPresignedUrl("photo.png", ImageSize.ORIGINAL);
+
+        assertEquals(first, second);
+        verify(minioClient, times(1)).statObject(any());
+        verify(presignMinioClient, times(1)).getPresignedObjectUrl(any());
+        verify(minioClient, never()).getPresignedObjectUrl(any());
+    }
+
+    @Test
+    @DisplayName("GET no presigned URL when the image does not exist")
+    void missingPresignedUrl() throws Exception {
+        ErrorResponse notFound = new ErrorResponse("NoSuchKey", "Not found", "test-bucket", "missing.png", null, null, null);
+        when(minioClient.statObject(any())).thenThrow(new ErrorResponseException(notFound, null, null));
+
+        assertNull(imageService.getPresignedUrl("missing.png", ImageSize.ORIGINAL));
+        verifyNoInteractions(presignMinioClient);
+    }
+
+    @Test
+    @DisplayName("Sign a new URL once the cached one has used half of its validity")
+    void expiredPresignedUrl() throws Exception {
+        ReflectionTestUtils.setField(imageService, "presignedExpirySeconds", 0);
+        when(minioClient.statObject(any())).thenReturn(mock(StatObjectResponse.class));
+        when(presignMinioClient.getPresignedObjectUrl(any())).thenReturn("http://localhost:9000/test-bucket/photo.png?X-Amz-Signature=abc");
+
+        imageService.getPresignedUrl("photo.png", ImageSize.ORIGINAL);
+        imageService.getPresignedUrl("photo.png", ImageSize.ORIGINAL);
+
+        verify(presignMinioClient, times(2)).getPresignedObjectUrl(any());
+    }
+}
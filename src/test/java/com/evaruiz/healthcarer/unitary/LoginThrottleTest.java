@@ -0,0 +1,204 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.security.LoginThrottle;
+import com.evaruiz.healthcarer.security.LoginThrottleFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoginThrottleTest {
+
+    private static final String IP_KEY = "healthcarer:login:ip:10.0.0.1";
+    private static final String ACCOUNT_KEY = "healthcarer:login:account:alice@example.com";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        loginThrottle = new LoginThrottle(redisTemplate);
+        ReflectionTestUtils.setField(loginThrottle, "maxFailuresPerIp", 50L);
+        ReflectionTestUtils.setField(loginThrottle, "maxFailuresPerAccount", 5L);
+        ReflectionTestUtils.setField(loginThrottle, "windowSeconds", 900L);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    private AuthenticationFailureBadCredentialsEvent failure(String remoteAddress) {
+        UsernamePasswordAuthenticationToken authentication =
+                UsernamePasswordAuthenticationToken.unauthenticated(" Alice@Example.com ", "wrong");
+        authentication.setDetails(new WebAuthenticationDetails(remoteAddress, null));
+        return new AuthenticationFailureBadCredentialsEvent(authentication, new BadCredentialsException("bad"));
+    }
+
+    @Test
+    @DisplayName("Block login when the IP reaches its failure limit")
+    void blockedByIp() {
+        when(valueOperations.multiGet(List.of(IP_KEY, ACCOUNT_KEY))).thenReturn(Arrays.asList("50", null));
+
+        assertTrue(loginThrottle.isBlocked("10.0.0.1", "alice@example.com"));
+    }
+
+    @Test
+    @DisplayName("Block login when the account reaches its failure limit")
+    void blockedByAccount() {
+        when(valueOperations.multiGet(List.of(IP_KEY, ACCOUNT_KEY))).thenReturn(Arrays.asList("3", "5"));
+
+        assertTrue(loginThrottle.isBlocked("10.0.0.1", " ALICE@example.com"));
+    }
+
+    @Test
+    @DisplayName("Allow login below both limits")
+    void allowedBelowLimits() {
+        when(valueOperations.multiGet(List.of(IP_KEY, ACCOUNT_KEY))).thenReturn(Arrays.asList("49", "4"));
+
+        assertFalse(loginThrottle.isBlocked("10.0.0.1", "alice@example.com"));
+    }
+
+    @Test
+    @DisplayName("Allow login when the counters have expired")
+    void allowedAfterWindow() {
+        when(valueOperations.multiGet(List.of(IP_KEY, ACCOUNT_KEY))).thenReturn(Arrays.asList(null, null));
+
+        assertFalse(loginThrottle.isBlocked("10.0.0.1", "alice@example.com"));
+    }
+
+    @Test
+    @DisplayName("Allow login when Redis is down")
+    void allowedWhenRedisDown() {
+        when(valueOperations.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertFalse(loginThrottle.isBlocked("10.0.0.1", "alice@example.com"));
+    }
+
+    @Test
+    @DisplayName("Every failure restarts the window on both counters")
+    void failureSlidesWindow() {
+        when(valueOperations.increment(IP_KEY)).thenReturn(1L, 7L);
+        when(valueOperations.increment(ACCOUNT_KEY)).thenReturn(1L, 2L);
+
+        loginThrottle.onFailure(failure("10.0.0.1"));
+        loginThrottle.onFailure(failure("10.0.0.1"));
+
+        verify(redisTemplate, times(2)).expire(IP_KEY, Duration.ofSeconds(900));
+        verify(redisTemplate, times(2)).expire(ACCOUNT_KEY, Duration.ofSeconds(900));
+    }
+
+    @Test
+    @DisplayName("Failures are counted per client address")
+    void failuresPerClientAddress() {
+        String otherIpKey = "healthcarer:login:ip:10.0.0.2";
+        when(valueOperations.multiGet(List.of(IP_KEY, ACCOUNT_KEY))).thenReturn(Arrays.asList("50", null));
+        when(valueOperations.multiGet(List.of(otherIpKey, ACCOUNT_KEY))).thenReturn(Arrays.asList(null, null));
+
+        loginThrottle.onFailure(failure("10.0.0.1"));
+        loginThrottle.onFailure(failure("10.0.0.2"));
+
+        verify(valueOperations).increment(IP_KEY);
+        verify(valueOperations).increment(otherIpKey);
+        verify(valueOperations, times(2)).increment(ACCOUNT_KEY);
+        assertTrue(loginThrottle.isBlocked("10.0.0.1", "alice@example.com"));
+        assertFalse(loginThrottle.isBlocked("10.0.0.2", "alice@example.com"));
+    }
+
+    @Test
+    @DisplayName("Failed login is ignored when Redis is down")
+    void failureWhenRedisDown() {
+        when(valueOperations.increment(IP_KEY)).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertDoesNotThrow(() -> loginThrottle.onFailure(failure("10.0.0.1")));
+    }
+
+    @Test
+    @DisplayName("Successful login resets the account counter")
+    void successResetsAccount() {
+        UsernamePasswordAuthenticationToken authentication =
+                UsernamePasswordAuthenticationToken.authenticated("Alice@Example.com", null, List.of());
+
+        loginThrottle.onSuccess(new AuthenticationSuccessEvent(authentication));
+
+        verify(redisTemplate).delete(ACCOUNT_KEY);
+        verify(redisTemplate, never()).delete(IP_KEY);
+    }
+
+    @Test
+    @DisplayName("Filter answers 429 to a blocked login")
+    void filterRejectsBlockedLogin() throws Exception {
+        LoginThrottle throttle = mock(LoginThrottle.class);
+        when(throttle.isBlocked("10.0.0.1", "alice@example.com")).thenReturn(true);
+        when(throttle.getWindowSeconds()).thenReturn(900L);
+        MockHttpServletRequest request = loginRequest("POST");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        new LoginThrottleFilter(throttle).doFilter(request, response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("900", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Filter lets through a login that is not blocked")
+    void filterAllowsLogin() throws Exception {
+        LoginThrottle throttle = mock(LoginThrottle.class);
+        when(throttle.isBlocked("10.0.0.1", "alice@example.com")).thenReturn(false);
+        MockHttpServletRequest request = loginRequest("POST");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        new LoginThrottleFilter(throttle).doFilter(request, response, chain);
+
+        assertEquals(200, response.getStatus());
+        assertSame(request, chain.getRequest());
+    }
+
+    @Test
+    @DisplayName("Filter ignores requests other than POST /login")
+    void filterIgnoresOtherRequests() throws Exception {
+        LoginThrottle throttle = mock(LoginThrottle.class);
+        MockHttpServletRequest request = loginRequest("GET");
+        MockFilterChain chain = new MockFilterChain();
+
+        new LoginThrottleFilter(throttle).doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertSame(request, chain.getRequest());
+        verifyNoInteractions(throttle);
+    }
+
+    private static MockHttpServletRequest loginRequest(String method) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/login");
+        request.setServletPath("/login");
+        request.setRemoteAddr("10.0.0.1");
+        request.setParameter("email", "alice@example.com");
+        return request;
+    }
+}
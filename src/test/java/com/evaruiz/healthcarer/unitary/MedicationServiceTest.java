@@ -143,13 +143,13 @@ class MedicationServiceTest {
                 medication1.getInstructions(), medication1.getDose(), medication1.getImagePath(),
                 new ArrayList<>(medication1.getTreatments()), user1, new ArrayList<>(medication1.getTakes()));
 
-        when(medicationRepository.findById(medicationId)).thenReturn(Optional.of(medicationToModify));
+        when(medicationRepository.findByIdAndUserId(medicationId, user1.getId())).thenReturn(Optional.of(medicationToModify));
         when(medicationRepository.save(any(MedicationDB.class))).thenReturn(medicationToModify);
 
-        medicationService.removeMedicationFromUser(medicationId);
+        medicationService.removeMedicationFromUser(medicationId, user1.getId());
 
         assertNull(medicationToModify.getUser(), "Medication's user should be set to null");
-        verify(medicationRepository, times(1)).findById(medicationId);
+        verify(medicationRepository, times(1)).findByIdAndUserId(medicationId, user1.getId());
         verify(medicationRepository, times(1)).save(medicationToModify);
     }
 
@@ -157,12 +157,35 @@ class MedicationServiceTest {
     @DisplayName("DELETE a medication that does not exist")
     void deleteMedicationThatDoesNotExist() {
         Long nonExistentId = 999L;
-        when(medicationRepository.findById(nonExistentId)).thenReturn(Optional.empty());
+        when(medicationRepository.findByIdAndUserId(nonExistentId, user1.getId())).thenReturn(Optional.empty());
 
-        EntityNotFoundException thrown = assertThrows(EntityNotFoundException.class, () -> medicationService.removeMedicationFromUser(nonExistentId));
+        EntityNotFoundException thrown = assertThrows(EntityNotFoundException.class, () -> medicationService.removeMedicationFromUser(nonExistentId, user1.getId()));
 
         assertEquals("No existe la medicación con ID: " + nonExistentId, thrown.getMessage());
-        verify(medicationRepository, times(1)).findById(nonExistentId);
+        verify(medicationRepository, times(1)).findByIdAndUserId(nonExistentId, user1.getId());
         verify(medicationRepository, never()).save(any(MedicationDB.class));
     }
+
+    @Test
+    @DisplayName("GET a whole medication selection with one query")
+    void medicationSelectionByIdsAndUserId() {
+        when(medicationRepository.findAllByIdInAndUserId(Set.of(101L, 102L), user1.getId()))
+                .thenReturn(Arrays.asList(medication1, medication2));
+
+        List<MedicationDB> medications = medicationService.findAllByIdAndUserId(List.of(101L, 102L, 101L), user1.getId());
+
+        assertEquals(2, medications.size());
+        verify(medicationRepository, times(1)).findAllByIdInAndUserId(Set.of(101L, 102L), user1.getId());
+        verify(medicationRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("EntityNotFoundException if any selected medication belongs to another user")
+    void medicationSelectionWithForeignMedication() {
+        when(medicationRepository.findAllByIdInAndUserId(Set.of(101L, 102L), user2.getId()))
+                .thenReturn(List.of());
+
+        assertThrows(EntityNotFoundException.class, () ->
+                medicationService.findAllByIdAndUserId(List.of(101L, 102L), user2.getId()));
+    }
 }
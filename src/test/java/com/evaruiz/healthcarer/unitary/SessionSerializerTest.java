@@ -0,0 +1,80 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.config.SessionSerializer;
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.model.UserDB;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionSerializerTest {
+
+    private SessionSerializer serializer;
+    private SecurityContextImpl context;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new SessionSerializer();
+        LoggedUser user = new LoggedUser(new UserDB(1L, "Alice", "alice@example.com",
+                "encodedPassword", "ROLE_USER", new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        context = new SecurityContextImpl(
+                UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+    }
+
+    @Test
+    @DisplayName("Security context round trip without the password hash")
+    void securityContextRoundTrip() {
+        byte[] bytes = serializer.serialize(context);
+
+        SecurityContext restored = (SecurityContext) serializer.deserialize(bytes);
+
+        Authentication authentication = restored.getAuthentication();
+        assertTrue(authentication.isAuthenticated());
+        LoggedUser user = assertInstanceOf(LoggedUser.class, authentication.getPrincipal());
+        assertEquals(1L, user.getId());
+        assertEquals("alice@example.com", user.getUsername());
+        assertEquals("Alice", user.getName());
+        assertEquals("ROLE_USER", user.getRole());
+        assertNull(user.getPassword());
+        assertTrue(authentication.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_USER")));
+        assertTrue(bytes.length < new JdkSerializationRedisSerializer().serialize(context).length);
+    }
+
+    @Test
+    @DisplayName("Session timestamps round trip as numbers")
+    void numbersRoundTrip() {
+        assertEquals(1752748200000L, serializer.deserialize(serializer.serialize(1752748200000L)));
+        assertEquals(1800, serializer.deserialize(serializer.serialize(1800)));
+    }
+
+    @Test
+    @DisplayName("Sessions stored with Java serialization are still readable")
+    void readsLegacySessions() {
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(context);
+
+        SecurityContext restored = (SecurityContext) serializer.deserialize(legacy);
+
+        LoggedUser user = assertInstanceOf(LoggedUser.class, restored.getAuthentication().getPrincipal());
+        assertEquals("alice@example.com", user.getUsername());
+    }
+
+    @Test
+    @DisplayName("Other attributes fall back to Java serialization")
+    void otherAttributesFallBack() {
+        Map<String, String> attribute = Map.of("key", "value");
+
+        assertEquals(attribute, serializer.deserialize(serializer.serialize(attribute)));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+}
@@ -4,6 +4,7 @@ import com.evaruiz.healthcarer.model.MedicationDB;
 import com.evaruiz.healthcarer.model.TakeDB;
 import com.evaruiz.healthcarer.model.UserDB;
 import com.evaruiz.healthcarer.repository.TakeRepository;
+import com.evaruiz.healthcarer.service.MedicationService;
 import com.evaruiz.healthcarer.service.TakeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -26,6 +27,9 @@ class TakeServiceTest {
     @Mock
     private TakeRepository takeRepository;
 
+    @Mock
+    private MedicationService medicationService;
+
     @InjectMocks
     private TakeService takeService;
 
@@ -123,4 +127,49 @@ class TakeServiceTest {
         verify(takeRepository, times(1)).deleteById(takeIdToDelete);
         verifyNoMoreInteractions(takeRepository);
     }
+
+    @Test
+    @DisplayName("DELETE a take only if it belongs to the user")
+    void deleteTakeByIdAndUserId() {
+        when(takeRepository.deleteByIdAndUserId(4L, 1L)).thenReturn(1);
+        when(takeRepository.deleteByIdAndUserId(4L, 2L)).thenReturn(0);
+
+        assertTrue(takeService.deleteByIdAndUserId(4L, 1L));
+        assertFalse(takeService.deleteByIdAndUserId(4L, 2L));
+
+        verify(takeRepository, never()).deleteById(anyLong());
+    }
+
+    @Test
+    @DisplayName("POST a take resolving its medications and discounting their stock at once")
+    void recordTake() {
+        LocalDateTime date = LocalDateTime.now().minusHours(1);
+        List<Long> medicationIds = List.of(medication1.getId(), medication2.getId());
+        when(medicationService.findAllByIdAndUserId(medicationIds, user1.getId()))
+                .thenReturn(Arrays.asList(medication1, medication2));
+
+        TakeDB take = takeService.recordTake(date, medicationIds, user1);
+
+        assertEquals(date, take.getDate());
+        assertEquals(user1, take.getUser());
+        assertEquals(Arrays.asList(medication1, medication2), take.getMedications());
+        verify(takeRepository, times(1)).save(take);
+        verify(medicationService, times(1)).discountMedicationStock(medicationIds);
+        verifyNoMoreInteractions(medicationService);
+    }
+
+    @Test
+    @DisplayName("POST a take is rejected when a medication is out of stock")
+    void recordTakeWithoutStock() {
+        List<Long> medicationIds = List.of(medication1.getId(), medication2.getId());
+        when(medicationService.findAllByIdAndUserId(medicationIds, user1.getId()))
+                .thenReturn(Arrays.asList(medication1, medication2));
+        when(medicationService.discountMedicationStock(medicationIds)).thenReturn(List.of(medication2.getId()));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> takeService.recordTake(LocalDateTime.now().minusHours(1), medicationIds, user1));
+
+        assertTrue(exception.getMessage().contains(medication2.getName()));
+        verify(takeRepository, never()).save(any());
+    }
 }
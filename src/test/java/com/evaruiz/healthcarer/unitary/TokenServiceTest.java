@@ -0,0 +1,106 @@
+package com.evaruiz.healthcarer.unitary;
+
+import com.evaruiz.healthcarer.model.DTO.LoggedUser;
+import com.evaruiz.healthcarer.security.TokenRevocationList;
+import com.evaruiz.healthcarer.security.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenServiceTest {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+    private static final String NEW_KEY = "fedcba9876543210fedcba9876543210";
+
+    @Mock
+    private TokenRevocationList revocationList;
+
+    private TokenService tokenService;
+    private LoggedUser user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tokenService = newTokenService(KEY, 900);
+        user = new LoggedUser(1L, "alice@example.com", "ROLE_USER", "Alice");
+    }
+
+    private TokenService newTokenService(String secrets, long ttlSeconds) throws Exception {
+        TokenService service = new TokenService(new ObjectMapper(), revocationList);
+        ReflectionTestUtils.setField(service, "secrets", secrets);
+        ReflectionTestUtils.setField(service, "ttlSeconds", ttlSeconds);
+        service.init();
+        return service;
+    }
+
+    @Test
+    @DisplayName("Issued token carries the user claims")
+    void issueAndVerify() {
+        String token = tokenService.issue(user);
+
+        TokenService.TokenClaims claims = tokenService.verify(token);
+
+        assertNotNull(claims);
+        LoggedUser restored = claims.toLoggedUser();
+        assertEquals(1L, restored.getId());
+        assertEquals("alice@example.com", restored.getUsername());
+        assertEquals("ROLE_USER", restored.getRole());
+        assertEquals("Alice", restored.getName());
+        assertNull(restored.getPassword());
+        assertFalse(tokenService.needsRefresh(claims));
+    }
+
+    @Test
+    @DisplayName("Tampered token is rejected")
+    void tamperedToken() {
+        String[] parts = tokenService.issue(user).split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"sub\":\"bob@example.com\",\"uid\":2,\"role\":\"ROLE_USER\",\"exp\":9999999999,\"jti\":\"x\"}".getBytes());
+
+        assertNull(tokenService.verify(parts[0] + "." + forgedPayload + "." + parts[2]));
+        assertNull(tokenService.verify("not-a-token"));
+    }
+
+    @Test
+    @DisplayName("Expired token is rejected")
+    void expiredToken() throws Exception {
+        String token = newTokenService(KEY, -1).issue(user);
+
+        assertNull(tokenService.verify(token));
+    }
+
+    @Test
+    @DisplayName("Revoked token is rejected")
+    void revokedToken() {
+        String token = tokenService.issue(user);
+        when(revocationList.isRevoked(anyString())).thenReturn(true);
+
+        assertNull(tokenService.verify(token));
+    }
+
+    @Test
+    @DisplayName("Tokens signed with the previous key stay valid after rotation")
+    void keyRotation() throws Exception {
+        String oldToken = tokenService.issue(user);
+        TokenService rotated = newTokenService(NEW_KEY + "," + KEY, 900);
+
+        assertNotNull(rotated.verify(oldToken));
+        assertNull(tokenService.verify(rotated.issue(user)));
+    }
+
+    @Test
+    @DisplayName("Short keys are refused")
+    void shortKey() {
+        assertThrows(IllegalStateException.class, () -> newTokenService("short", 900));
+    }
+}
@@ -121,4 +121,16 @@ class TreatmentServiceTest {
         verify(treatmentRepository, times(1)).deleteById(treatmentIdToDelete);
         verifyNoMoreInteractions(treatmentRepository);
     }
+
+    @Test
+    @DisplayName("DELETE a treatment only if it belongs to the user")
+    void deleteTreatmentByIdAndUserId() {
+        when(treatmentRepository.deleteByIdAndUserId(4L, 1L)).thenReturn(1);
+        when(treatmentRepository.deleteByIdAndUserId(4L, 2L)).thenReturn(0);
+
+        assertTrue(treatmentService.deleteByIdAndUserId(4L, 1L));
+        assertFalse(treatmentService.deleteByIdAndUserId(4L, 2L));
+
+        verify(treatmentRepository, never()).deleteById(anyLong());
+    }
 }
@@ -136,6 +136,23 @@ class UserServiceTest {
         verifyNoMoreInteractions(userRepository);
     }
 
+    @Test
+    @DisplayName("PUT upgraded password hash after login")
+    void upgradePasswordHash() {
+        String email = existingUser.getEmail();
+        UserDetails loggedUser = new LoggedUser(existingUser);
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(existingUser));
+        when(userRepository.save(existingUser)).thenReturn(existingUser);
+
+        UserDetails upgraded = userService.updatePassword(loggedUser, "upgradedEncodedPassword");
+
+        assertEquals("upgradedEncodedPassword", existingUser.getEncodedPassword());
+        assertEquals("upgradedEncodedPassword", upgraded.getPassword());
+        assertEquals(email, upgraded.getUsername());
+        verify(userRepository, times(1)).save(existingUser);
+        verifyNoInteractions(passwordEncoder);
+    }
+
     @Test
     @DisplayName("GET true if user found by email")
     void userFoundByEmail() {
@@ -223,6 +240,18 @@ class UserServiceTest {
         verifyNoMoreInteractions(userRepository);
     }
 
+    @Test
+    @DisplayName("GET user reference without loading the user")
+    void userReferenceById() {
+        when(userRepository.getReferenceById(1L)).thenReturn(existingUser);
+
+        UserDB reference = userService.getReference(1L);
+
+        assertSame(existingUser, reference);
+        verify(userRepository, never()).findById(anyLong());
+        verifyNoMoreInteractions(userRepository);
+    }
+
     @Test
     @DisplayName("GET user not found by ID")
     void userNotFoundById() {